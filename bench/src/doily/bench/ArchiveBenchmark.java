@@ -0,0 +1,105 @@
+package doily.bench;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures saving a drawing in the archive, which savePannelInFile does, and
+ * loading it back, which addPictures does, for drawings of 10 thousand to 10
+ * million points. Every iteration saves in a new archive, so the file doesn't
+ * keep growing.
+ *
+ * @author Alexandru Amarandei Stanescu aas1u16
+ */
+@State(Scope.Thread)
+@Fork(value = 1, jvmArgsAppend = {"-Xmx2g"})
+@Warmup(iterations = 2, time = 1)
+@Measurement(iterations = 5, time = 1)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class ArchiveBenchmark {
+
+    @Param({"10000", "1000000", "10000000"})
+    public int points;
+
+    private Object record;
+    private File folder;
+    private Object archive;
+
+    /**
+     * Creates the drawing.
+     *
+     * @throws Throwable If the application classes can't be used
+     */
+    @Setup(Level.Trial)
+    public void setUp() throws Throwable {
+        Object strokes = Doily.syntheticStrokes(points, 1000, 800, 42);
+        int strokeCount = (points + 999) / 1000;
+        folder = Files.createTempDirectory("doily-bench").toFile();
+        record = (Object) Doily.NEW_RECORD.invokeExact("bench", 4, 12, true, true, 0xFF000000, 0,
+                new ArrayList<Integer>(), strokes, strokeCount);
+    }
+
+    /**
+     * Creates a new archive with the drawing in it.
+     *
+     * @throws Throwable If the archive can't be written
+     */
+    @Setup(Level.Iteration)
+    public void newArchive() throws Throwable {
+        File file = new File(folder, "saves.dda");
+        Files.deleteIfExists(file.toPath());
+        archive = (Object) Doily.NEW_ARCHIVE.invokeExact(file);
+        Doily.APPEND.invokeExact(archive, record);
+    }
+
+    /**
+     * Deletes the archive.
+     *
+     * @throws IOException If it can't be deleted
+     */
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        for (File file : folder.listFiles()) {
+            Files.delete(file.toPath());
+        }
+        Files.delete(folder.toPath());
+    }
+
+    /**
+     * Saves the drawing at the end of the archive.
+     *
+     * @throws Throwable If the archive can't be written
+     */
+    @Benchmark
+    public void save() throws Throwable {
+        Doily.APPEND.invokeExact(archive, record);
+    }
+
+    /**
+     * Loads the first drawing of the archive.
+     *
+     * @return The record
+     * @throws Throwable If the archive can't be read
+     */
+    @Benchmark
+    public Object load() throws Throwable {
+        return (Object) Doily.READ.invokeExact(archive, 0);
+    }
+}
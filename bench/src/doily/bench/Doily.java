@@ -0,0 +1,169 @@
+package doily.bench;
+
+import java.awt.Graphics2D;
+import java.io.File;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.util.ArrayList;
+import java.util.Random;
+
+/**
+ * The classes of the application are in the default package, which can't be
+ * imported, and JMH doesn't accept benchmarks in the default package. This
+ * class finds the classes by name once and gives method handles for the
+ * calls that are measured. The handles are constants, so the JIT compiles a
+ * call through them like a direct call. The objects of the application are
+ * kept as Object.
+ *
+ * @author Alexandru Amarandei Stanescu aas1u16
+ */
+final class Doily {
+
+    private static final MethodHandles.Lookup LOOKUP = MethodHandles.publicLookup();
+
+    static final MethodHandle NEW_STROKE_STORE = constructor("StrokeStore", int.class, int.class);
+    static final MethodHandle ADD_STROKE = method("StrokeStore", "addStroke", int.class,
+            int.class, int.class, int.class, int.class);
+    static final MethodHandle ADD_POINT = method("StrokeStore", "addPoint", void.class, float.class, float.class);
+    static final MethodHandle GET_XS = method("StrokeStore", "getXs", float[].class);
+    static final MethodHandle GET_YS = method("StrokeStore", "getYs", float[].class);
+
+    static final MethodHandle NEW_SCENE = constructor("DoilyScene", type("StrokeStore"), int.class, int.class,
+            int.class, boolean.class, boolean.class, int.class, long.class);
+
+    static final MethodHandle NEW_RENDERER = constructor("DoilyRenderer");
+    static final MethodHandle PAINT_SCENE = method("DoilyRenderer", "paintScene", boolean.class,
+            Graphics2D.class, type("DoilyScene"), int.class, int.class);
+    static final MethodHandle PAINT_LAST_SEGMENT = method("DoilyRenderer", "paintLastSegment", void.class,
+            Graphics2D.class, type("StrokeStore"), int.class, int.class, boolean.class, int.class, int.class,
+            type("DirtyTiles"));
+
+    static final MethodHandle NEW_DIRTY_TILES = constructor("DirtyTiles", int.class);
+    static final MethodHandle RESIZE_TILES = method("DirtyTiles", "resize", void.class, int.class, int.class);
+    static final MethodHandle CLEAR_TILES = method("DirtyTiles", "clear", void.class);
+
+    static final MethodHandle NEW_SYMMETRY = constructor("SymmetryEngine", int.class);
+    static final MethodHandle TRANSFORM = method("SymmetryEngine", "transform", void.class,
+            float[].class, float[].class, int.class, int.class, double.class, double.class, double.class,
+            double.class, double.class, double.class, double.class);
+    static final MethodHandle GET_ROTATED_XS = method("SymmetryEngine", "getXs", double[].class);
+
+    static final MethodHandle NEW_ARCHIVE = constructor("DoilyArchive", File.class);
+    static final MethodHandle APPEND = method("DoilyArchive", "append", void.class, type("DoilyRecord"));
+    static final MethodHandle READ = method("DoilyArchive", "read", type("DoilyRecord"), int.class);
+    static final MethodHandle NEW_RECORD = constructor("DoilyRecord", String.class, int.class, int.class,
+            boolean.class, boolean.class, int.class, int.class, ArrayList.class, type("StrokeStore"), int.class);
+
+    private Doily() {
+    }
+
+    /**
+     * Creates a store with <code>points</code> points in strokes of
+     * <code>pointsPerStroke</code> points, drawn as random walks in a window
+     * of <code>size</code> x <code>size</code>. The same seed always gives
+     * the same drawing.
+     *
+     * @param points Number of points
+     * @param pointsPerStroke Points in every stroke
+     * @param size Size of the window
+     * @param seed Seed of the random walks
+     * @return The StrokeStore
+     * @throws Throwable If the store can't be created
+     */
+    static Object syntheticStrokes(int points, int pointsPerStroke, int size, long seed) throws Throwable {
+        Random random = new Random(seed);
+        Object strokes = (Object) NEW_STROKE_STORE.invokeExact(points / pointsPerStroke + 1, points);
+        float x = 0, y = 0;
+        for (int i = 0; i < points; i++) {
+            if (i % pointsPerStroke == 0) {
+                int rgb = 0xFF000000 | random.nextInt(0xFFFFFF);
+                int stroke = (int) ADD_STROKE.invokeExact(strokes, rgb, 1 + random.nextInt(8), size, size);
+                x = size / 4 + random.nextInt(size / 2);
+                y = size / 4 + random.nextInt(size / 2);
+            }
+            x = Math.max(0, Math.min(size, x + random.nextInt(7) - 3));
+            y = Math.max(0, Math.min(size, y + random.nextInt(7) - 3));
+            ADD_POINT.invokeExact(strokes, x, y);
+        }
+        return strokes;
+    }
+
+    /**
+     * Returns the application class called <code>name</code>.
+     *
+     * @param name Name of the class
+     * @return The class
+     */
+    private static Class<?> type(String name) {
+        try {
+            return Class.forName(name);
+        } catch (ClassNotFoundException e) {
+            throw new IllegalStateException("The application classes are not on the classpath", e);
+        }
+    }
+
+    /**
+     * Returns a handle for a public constructor of <code>owner</code>, which
+     * returns Object.
+     *
+     * @param owner Name of the class
+     * @param parameters Types of the parameters
+     * @return The handle
+     */
+    private static MethodHandle constructor(String owner, Class<?>... parameters) {
+        try {
+            return erase(LOOKUP.findConstructor(type(owner), MethodType.methodType(void.class, parameters)));
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException(owner + " has changed", e);
+        }
+    }
+
+    /**
+     * Returns a handle for a public method of <code>owner</code>, which takes
+     * the object as the first parameter.
+     *
+     * @param owner Name of the class
+     * @param name Name of the method
+     * @param returnType Type it returns
+     * @param parameters Types of the parameters
+     * @return The handle
+     */
+    private static MethodHandle method(String owner, String name, Class<?> returnType, Class<?>... parameters) {
+        try {
+            return erase(LOOKUP.findVirtual(type(owner), name, MethodType.methodType(returnType, parameters)));
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException(owner + "." + name + " has changed", e);
+        }
+    }
+
+    /**
+     * Changes every application class in the type of <code>handle</code> to
+     * Object, so it can be called from this package.
+     *
+     * @param handle Handle to change
+     * @return The changed handle
+     */
+    private static MethodHandle erase(MethodHandle handle) {
+        MethodType type = handle.type();
+        for (int i = 0; i < type.parameterCount(); i++) {
+            if (isApplicationClass(type.parameterType(i))) {
+                type = type.changeParameterType(i, Object.class);
+            }
+        }
+        if (isApplicationClass(type.returnType())) {
+            type = type.changeReturnType(Object.class);
+        }
+        return handle.asType(type);
+    }
+
+    /**
+     * Checks if <code>type</code> is in the default package.
+     *
+     * @param type Class to check
+     * @return true if it is a class of the application
+     */
+    private static boolean isApplicationClass(Class<?> type) {
+        return !type.isPrimitive() && !type.isArray() && type.getName().indexOf('.') < 0;
+    }
+}
@@ -0,0 +1,68 @@
+package doily.bench;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures how many points per second are scaled to a new window and rotated
+ * for every sector. This is the work getPointCoordonates and getPointRotated
+ * used to do one point at a time, now done by SymmetryEngine.transform for a
+ * whole stroke.
+ *
+ * @author Alexandru Amarandei Stanescu aas1u16
+ */
+@State(Scope.Thread)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class GeometryBenchmark {
+
+    private static final int POINTS = 10000;
+
+    @Param({"4", "12", "25", "50", "100"})
+    public int sectors;
+
+    private Object symmetry;
+    private float[] xs, ys;
+
+    /**
+     * Creates the points and the sine and cosine tables.
+     *
+     * @throws Throwable If the application classes can't be used
+     */
+    @Setup(Level.Trial)
+    public void setUp() throws Throwable {
+        symmetry = (Object) Doily.NEW_SYMMETRY.invokeExact(sectors);
+        Object strokes = Doily.syntheticStrokes(POINTS, POINTS, 800, 42);
+        xs = (float[]) Doily.GET_XS.invokeExact(strokes);
+        ys = (float[]) Doily.GET_YS.invokeExact(strokes);
+    }
+
+    /**
+     * Scales and rotates the points from a window of 800 x 600 to one of
+     * 1024 x 768.
+     *
+     * @return The rotated x coordinates, so the work is not thrown away
+     * @throws Throwable If the application classes can't be used
+     */
+    @Benchmark
+    @BenchmarkMode(Mode.Throughput)
+    @OutputTimeUnit(TimeUnit.SECONDS)
+    @OperationsPerInvocation(POINTS)
+    public double[] transformPoints() throws Throwable {
+        Doily.TRANSFORM.invokeExact(symmetry, xs, ys, 0, POINTS, 100d, 0d, 1.28d, 128d, 0d, 512d, 384d);
+        return (double[]) Doily.GET_ROTATED_XS.invokeExact(symmetry);
+    }
+}
@@ -0,0 +1,106 @@
+package doily.bench;
+
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures a full redraw of a drawing, which is what the drawing panel does
+ * in paintPointsOnImage, and the segment painted for every mouse event while
+ * dragging. Both are measured for different numbers of sectors, with and
+ * without reflection.
+ *
+ * @author Alexandru Amarandei Stanescu aas1u16
+ */
+@State(Scope.Thread)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class RenderBenchmark {
+
+    private static final int SIZE = 800;
+
+    @Param({"4", "12", "25", "50", "100"})
+    public int sectors;
+
+    @Param({"true", "false"})
+    public boolean reflect;
+
+    @Param({"10000"})
+    public int points;
+
+    private Object renderer;
+    private Object scene;
+    private Object segment;
+    private Object dirtyTiles;
+    private BufferedImage image;
+    private Graphics2D g2;
+
+    /**
+     * Creates the drawing and the image it is painted on.
+     *
+     * @throws Throwable If the application classes can't be used
+     */
+    @Setup(Level.Trial)
+    public void setUp() throws Throwable {
+        renderer = (Object) Doily.NEW_RENDERER.invokeExact();
+        Object strokes = Doily.syntheticStrokes(points, 100, SIZE, 42);
+        int strokeCount = (points + 99) / 100;
+        scene = (Object) Doily.NEW_SCENE.invokeExact(strokes, 0, strokeCount, sectors, reflect, true,
+                0xFF000000, 0L);
+        //A stroke of two points, so every call paints one segment
+        segment = Doily.syntheticStrokes(2, 2, SIZE, 7);
+        dirtyTiles = (Object) Doily.NEW_DIRTY_TILES.invokeExact(64);
+        Doily.RESIZE_TILES.invokeExact(dirtyTiles, SIZE, SIZE);
+        image = new BufferedImage(SIZE, SIZE, BufferedImage.TYPE_INT_RGB);
+        g2 = image.createGraphics();
+    }
+
+    /**
+     * Frees the graphics object.
+     */
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        g2.dispose();
+    }
+
+    /**
+     * Paints the background, the bars and every stroke.
+     *
+     * @return false if it was interrupted
+     * @throws Throwable If the application classes can't be used
+     */
+    @Benchmark
+    @BenchmarkMode(Mode.AverageTime)
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public boolean fullRedraw() throws Throwable {
+        return (boolean) Doily.PAINT_SCENE.invokeExact(renderer, g2, scene, SIZE, SIZE);
+    }
+
+    /**
+     * Paints the last segment of a stroke in every sector, like one mouse
+     * drag event.
+     *
+     * @throws Throwable If the application classes can't be used
+     */
+    @Benchmark
+    @BenchmarkMode(Mode.AverageTime)
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    public void lastSegment() throws Throwable {
+        Doily.PAINT_LAST_SEGMENT.invokeExact(renderer, g2, segment, 0, sectors, reflect, SIZE, SIZE, dirtyTiles);
+        Doily.CLEAR_TILES.invokeExact(dirtyTiles);
+    }
+}
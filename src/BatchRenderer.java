@@ -0,0 +1,158 @@
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * This class paints the drawings of a save archive as PNG pictures from the
+ * command line, without opening a window, so it can run on a machine without
+ * a display. Every drawing is painted at the requested size by a
+ * DoilyRenderer, the same way the drawing panel paints it, in bands that are
+ * written straight into the file, so even poster sized pictures fit in
+ * memory. The drawings are painted and written on a pool of threads.
+ *
+ * Usage: java -cp DigitalDoyle.jar BatchRenderer archive outputFolder width
+ * height [threads]
+ *
+ * The picture of record n is written as n_name.png in the output folder,
+ * where name is the file name of the picture the drawing was saved with.
+ *
+ * @author Alexandru Amarandei Stanescu aas1u16
+ */
+public class BatchRenderer {
+
+    /**
+     * Reads the arguments and paints all the drawings of the archive.
+     *
+     * @param args archive, output folder, width, height and optionally the
+     * number of threads
+     */
+    public static void main(String[] args) {
+        //Must be set before any AWT class is used
+        System.setProperty("java.awt.headless", "true");
+        if (args.length < 4 || args.length > 5) {
+            System.err.println("Usage: BatchRenderer archive outputFolder width height [threads]");
+            System.exit(2);
+        }
+        int width, height, threads;
+        try {
+            width = Integer.parseInt(args[2]);
+            height = Integer.parseInt(args[3]);
+            threads = args.length == 5 ? Integer.parseInt(args[4]) : Runtime.getRuntime().availableProcessors();
+        } catch (NumberFormatException e) {
+            System.err.println("The width, height and threads must be numbers!");
+            System.exit(2);
+            return;
+        }
+        if (width <= 0 || height <= 0 || threads <= 0) {
+            System.err.println("The width, height and threads must be positive!");
+            System.exit(2);
+        }
+        try {
+            File archiveFile = new File(args[0]);
+            if (!archiveFile.isFile()) {
+                throw new IOException(archiveFile + " doesn't exist");
+            }
+            int failed = new BatchRenderer(new DoilyArchive(archiveFile), new File(args[1]), width, height)
+                    .renderAll(threads);
+            System.exit(failed == 0 ? 0 : 1);
+        } catch (IOException e) {
+            System.err.println("Error in reading the archive: " + e.getMessage());
+            System.exit(1);
+        }
+    }
+
+    private final DoilyArchive archive;
+    private final File outputFolder;
+    private final int width, height;
+    //Every thread has its own renderer, as they have buffers
+    private final ThreadLocal<TiledExporter> exporters
+            = ThreadLocal.withInitial(() -> new TiledExporter(new DoilyRenderer()));
+
+    /**
+     * Creates a batch that paints the drawings of <code>archive</code> at
+     * <code>width</code> x <code>height</code> into
+     * <code>outputFolder</code>.
+     *
+     * @param archive Archive with the drawings
+     * @param outputFolder Folder for the pictures
+     * @param width Width of the pictures
+     * @param height Height of the pictures
+     */
+    public BatchRenderer(DoilyArchive archive, File outputFolder, int width, int height) {
+        this.archive = archive;
+        this.outputFolder = outputFolder;
+        this.width = width;
+        this.height = height;
+    }
+
+    /**
+     * Paints every drawing of the archive on <code>threads</code> threads and
+     * writes the pictures. A drawing that fails is reported and the others
+     * are still painted.
+     *
+     * @param threads Number of threads
+     * @return Number of drawings that failed
+     * @throws IOException If the output folder can't be created
+     */
+    public int renderAll(int threads) throws IOException {
+        if (!outputFolder.isDirectory() && !outputFolder.mkdirs()) {
+            throw new IOException("Can't create " + outputFolder);
+        }
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        ArrayList<Future<?>> results = new ArrayList<>();
+        for (int n = 0; n < archive.size(); n++) {
+            int record = n;
+            results.add(pool.submit(() -> {
+                render(record);
+                return null;
+            }));
+        }
+        pool.shutdown();
+        int failed = 0;
+        for (int n = 0; n < results.size(); n++) {
+            try {
+                results.get(n).get();
+            } catch (ExecutionException e) {
+                failed++;
+                System.err.println("Error in painting drawing " + n + ": " + e.getCause());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                pool.shutdownNow();
+                return failed + results.size() - n;
+            }
+        }
+        System.out.println("Painted " + (results.size() - failed) + " of " + results.size() + " drawings");
+        return failed;
+    }
+
+    /**
+     * Paints record <code>n</code> and writes it in the output folder.
+     *
+     * @param n Index of the record
+     * @throws IOException If the record can't be read or the picture can't
+     * be written
+     */
+    private void render(int n) throws IOException {
+        DoilyRecord record = archive.read(n);
+        DoilyScene scene = new DoilyScene(record.toHistory(), record.getSectors(), record.getReflect(),
+                record.getBars(), record.getBackground());
+        File picture = new File(outputFolder, n + "_" + fileName(record.getName()) + ".png");
+        exporters.get().export(scene, width, height, picture);
+    }
+
+    /**
+     * Returns the last part of <code>path</code>. The archive may come from
+     * another system, so both kinds of separators are used.
+     *
+     * @param path Picture path from the archive
+     * @return File name of the picture
+     */
+    private static String fileName(String path) {
+        return path.substring(Math.max(path.lastIndexOf('/'), path.lastIndexOf('\\')) + 1);
+    }
+}
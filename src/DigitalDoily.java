@@ -1,23 +1,18 @@
 
 import java.awt.*;
 import java.awt.event.ActionEvent;
-import java.awt.event.ComponentEvent;
-import java.awt.event.ComponentListener;
+import java.awt.event.MouseAdapter;
 import java.awt.event.MouseEvent;
-import java.awt.event.MouseListener;
 import java.awt.geom.*;
 import java.awt.image.BufferedImage;
-import java.io.BufferedWriter;
 import java.io.File;
-import java.io.FileNotFoundException;
-import java.io.FileWriter;
 import java.io.IOException;
-import java.io.PrintWriter;
-import java.util.ArrayList;
-import java.util.Scanner;
+import java.lang.management.ManagementFactory;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import javax.imageio.ImageIO;
+import javax.management.JMException;
+import javax.management.ObjectName;
 import javax.swing.*;
 import javax.swing.event.DocumentEvent;
 import javax.swing.event.DocumentListener;
@@ -26,13 +21,14 @@ import javax.swing.event.DocumentListener;
  * This class starts the application. First, it creates the GUI, then adds the
  * logic behind it.
  *
- * In the application you can: - Draw digital doilies - Undo or clear progress (
+ * In the application you can: - Draw digital doilies - Undo, redo or clear progress (
  * it is possible to undo a clear) - Change the size of the line you are
  * currently drawing and number of sectors - Select if you want to see the lines
  * or reflect the points - Change the colour of the line you are drawing in and
  * the background colour - Save as and save progress ( The data is saved in a
- * file called saves_aas1u16.txt) - Load past images - Delete images from file
- * (This will not delete the images on the disk)
+ * binary archive called saves_aas1u16.dda, the drawings from the old
+ * saves_aas1u16.txt are moved to it the first time) - Load past images -
+ * Delete images from file (This will not delete the images on the disk)
  *
  * @author Alexandru Amarandei Stanescu aas1u16
  */
@@ -48,6 +44,8 @@ public class DigitalDoily extends JFrame {
         d.addJFrame();
     }
 
+    //Archive with the saved drawings and the old text file they are moved from
+    private static final String SAVES_FILE = "saves_aas1u16.dda", OLD_SAVES_FILE = "saves_aas1u16.txt";
     //StartSize of line
     private final int STARTSIZE = 4;
     //Number of sectors
@@ -55,30 +53,26 @@ public class DigitalDoily extends JFrame {
     //Current values
     private int currentSize = STARTSIZE;
     private int currentNumberOfSectors = STARTSIZESECTORS;
-    //Memorizes the number of pictures in the picture panel, which should always be smaller than 12
-    private int numberOfPicturesInPicturePanel = 0;
-    //Memorizes which picture was last selected by the user
-    private int currentSelectedPicture = -1;
-    //Memorizes if the user clicked on a picture or not
-    private int clicks = 0;
     //Starting colours of line and backgorund
     private Color currentColor = Color.BLUE, backgroundColor = Color.BLACK;
     //FileName of picture, it will never contain the extension of .png
     private String pictureName = "";
+    //Saved drawings, opened by addPicturesFromFile
+    private DoilyArchive archive;
+    //Paints the thumbnails of the picture panel from the saved strokes in the background and caches them
+    private final ThumbnailLoader thumbnailLoader = new ThumbnailLoader(64);
     //Control panel is responsible for all the button and functions
     private final JPanel controlPanel = new JPanel();
     //Picture panel is responsible for all actions regarding the pictures
     private final JPanel picturePanel = new JPanel();
-    //Secondary pannel for the picture panel that will create scroll bars if needed
-    private final JPanel scrolledPicturePanel = new JPanel();
+    //Thumbnails of the saved drawings, only the ones in sight are painted
+    private final GalleryPanel gallery = new GalleryPanel(thumbnailLoader);
     //Size text box
     private final JTextField sizeTextField = new JTextField(3);
     //Sectors text box
     private final JTextField sectorsTextField = new JTextField(3);
     //Drawing panel, where all the drawing is proccesed
     private final DrawingPanel drawingPanel = new DrawingPanel();
-    //ArrayList that contains all the pictures in the picture panel
-    private final ArrayList<PicturePanel> picturePanelsArray = new ArrayList<>();
     //Dimensions for the first sizes of the image
     private final Dimension screenSize = Toolkit.getDefaultToolkit().getScreenSize();
     private final int minSize = Math.min(screenSize.width, screenSize.height);
@@ -120,41 +114,30 @@ public class DigitalDoily extends JFrame {
         //Alligns the Delete button with the drawing panel
         deleteButtonPanel.setPreferredSize(new Dimension(controlPanel.getWidth(), picturePanel.getHeight()));
         drawingPanel.createBufferedImage();
+        registerMetrics();
 
-        /**
-         * In case the frame is resized we can't create buffered images for
-         * every resize So we switch to a normal redraw for every point of the
-         * array for the duration of the resize.
-         *
-         */
-        addComponentListener(new ComponentListener() {
-            @Override
-            public void componentResized(ComponentEvent e) {
-                drawingPanel.setDrawForResize(true);
-                drawingPanel.repaint();
-
-            }
-
-            @Override
-            public void componentMoved(ComponentEvent e) {
-            }
-
-            @Override
-            public void componentShown(ComponentEvent e) {
-            }
-
-            @Override
-            public void componentHidden(ComponentEvent e) {
-            }
-        });
         //At last, we add the pictures from the save file 
-        addPicturesFromFile("saves_aas1u16.txt");
+        addPicturesFromFile(SAVES_FILE);
         setVisible(true);
 
         repaint();
 
     }
 
+    /**
+     * Registers the timings of the drawing panel in the platform MBean server
+     * as DigitalDoyle:type=DrawingPanel, so they can be watched with JConsole
+     * or any JMX client.
+     */
+    private void registerMetrics() {
+        try {
+            ManagementFactory.getPlatformMBeanServer().registerMBean(drawingPanel.getMetrics(),
+                    new ObjectName("DigitalDoyle:type=DrawingPanel"));
+        } catch (JMException ex) {
+            Logger.getLogger(DigitalDoily.class.getName()).log(Level.WARNING, "The timings are not shown in JMX", ex);
+        }
+    }
+
     /**
      * Adds the buttons and panels to the picture panel at the button of the
      * window.
@@ -167,22 +150,30 @@ public class DigitalDoily extends JFrame {
         JButton deleteButton = new JButton("        Remove        ");
         //If the button is clicked it will delete the current selected picture in the panel.
         deleteButton.addActionListener((ActionEvent e) -> {
-            if (clicks % 2 == 1 && clicks > 0) {
-                if (currentSelectedPicture != -1) {
-                    //Deletes the selected image
-                    deleteImage(currentSelectedPicture);
-                    repaint();
-                    setVisible(true);
-                }
+            if (gallery.getSelectedIndex() != -1) {
+                //Deletes the selected image
+                deleteImage(gallery.getSelectedIndex());
+                repaint();
             }
         });
 
         deleteButtonPanel.add(deleteButton);
         picturePanel.add(deleteButtonPanel, BorderLayout.WEST);
-        //We add the scrolled Picture panel to the scrollPane
-        JScrollPane pictureScroll = new JScrollPane(scrolledPicturePanel);
+        //If a picture is doubleclicked, then we paint it on the drawingPanel
+        gallery.addMouseListener(new MouseAdapter() {
+            @Override
+            public void mouseClicked(MouseEvent e) {
+                int index = gallery.locationToIndex(e.getPoint());
+                if (e.getClickCount() == 2 && index != -1 && gallery.getCellBounds(index, index).contains(e.getPoint())) {
+                    loadThisInDrawingPanel(index);
+                }
+            }
+        });
+        //We add the gallery to the scrollPane
+        JScrollPane pictureScroll = new JScrollPane(gallery);
 
         pictureScroll.setHorizontalScrollBarPolicy(JScrollPane.HORIZONTAL_SCROLLBAR_AS_NEEDED);
+        pictureScroll.setVerticalScrollBarPolicy(JScrollPane.VERTICAL_SCROLLBAR_NEVER);
         picturePanel.add(pictureScroll, BorderLayout.CENTER);
     }
 
@@ -194,7 +185,7 @@ public class DigitalDoily extends JFrame {
      */
     public void addStuffToControlPanel() {
         controlPanel.setLayout(new GridLayout(5, 1));
-        //First we add the clear and undo buttons
+        //First we add the clear, undo and redo buttons
         JPanel clearAndUndoPanel = new JPanel();
         clearAndUndoPanel.setLayout(new FlowLayout(FlowLayout.CENTER));
         JButton clearButton = new JButton("Clear");
@@ -207,8 +198,14 @@ public class DigitalDoily extends JFrame {
             drawingPanel.undoCommand();
             drawingPanel.repaintAndRecreate();
         });
+        JButton redoButton = new JButton("Redo");
+        redoButton.addActionListener((ActionEvent e) -> {
+            drawingPanel.redoCommand();
+            drawingPanel.repaint();
+        });
         clearAndUndoPanel.add(clearButton);
         clearAndUndoPanel.add(undoButton);
+        clearAndUndoPanel.add(redoButton);
         controlPanel.add(clearAndUndoPanel);
 
         /**
@@ -252,21 +249,21 @@ public class DigitalDoily extends JFrame {
             public void insertUpdate(DocumentEvent e) {
                 currentNumberOfSectors = changeSectorBasedOnTextBox(sectorsTextField);
                 drawingPanel.setMyNumberOfSectors(currentNumberOfSectors);
-                drawingPanel.repaintAndRecreate();
+                drawingPanel.recreateInBackground();
             }
 
             @Override
             public void removeUpdate(DocumentEvent e) {
                 currentNumberOfSectors = changeSectorBasedOnTextBox(sectorsTextField);
                 drawingPanel.setMyNumberOfSectors(currentNumberOfSectors);
-                drawingPanel.repaintAndRecreate();
+                drawingPanel.recreateInBackground();
             }
 
             @Override
             public void changedUpdate(DocumentEvent e) {
                 currentNumberOfSectors = changeSectorBasedOnTextBox(sectorsTextField);
                 drawingPanel.setMyNumberOfSectors(currentNumberOfSectors);
-                drawingPanel.repaintAndRecreate();
+                drawingPanel.recreateInBackground();
             }
         });
 
@@ -285,13 +282,13 @@ public class DigitalDoily extends JFrame {
 
         reflectCheckBox.addActionListener((ActionEvent e) -> {
             drawingPanel.setReflect(reflectCheckBox.isSelected());
-            drawingPanel.repaintAndRecreate();
+            drawingPanel.recreateInBackground();
         });
         JCheckBox linesCheckBox = new JCheckBox("Lines");
         linesCheckBox.setSelected(true);
         linesCheckBox.addActionListener((ActionEvent e) -> {
             drawingPanel.setShowLines(linesCheckBox.isSelected());
-            drawingPanel.repaintAndRecreate();
+            drawingPanel.recreateInBackground();
         });
         reflectCheckBox.setHorizontalTextPosition(SwingConstants.LEFT);
         linesCheckBox.setHorizontalTextPosition(SwingConstants.LEFT);
@@ -299,6 +296,16 @@ public class DigitalDoily extends JFrame {
         reflectAndLanesPannel.add(linesCheckBox);
         controlPanel.add(reflectAndLanesPannel);
 
+        //The timings overlay shows where the time of the drawing panel goes
+        JPanel timingsPanel = new JPanel(new FlowLayout());
+        JCheckBox timingsCheckBox = new JCheckBox("Timings");
+        timingsCheckBox.setHorizontalTextPosition(SwingConstants.LEFT);
+        timingsCheckBox.addActionListener((ActionEvent e) -> {
+            drawingPanel.setShowTimings(timingsCheckBox.isSelected());
+        });
+        timingsPanel.add(timingsCheckBox);
+        controlPanel.add(timingsPanel);
+
         /**
          * Then we add the colour chooser buttons. Only the background change
          * requires a full repaint.
@@ -310,7 +317,12 @@ public class DigitalDoily extends JFrame {
         colorChooserButton.setBackground(currentColor);
 
         colorChooserButton.addActionListener((ActionEvent e) -> {
-            currentColor = JColorChooser.showDialog(null, "Pick a color!", currentColor);
+            Color chosen = JColorChooser.showDialog(null, "Pick a color!", currentColor);
+            //A cancelled dialog gives null, then the old colour is kept
+            if (chosen == null) {
+                return;
+            }
+            currentColor = chosen;
             colorChooserButton.setBackground(currentColor);
             drawingPanel.setMyColor(currentColor);
             drawingPanel.repaintAndRecreate();
@@ -318,10 +330,15 @@ public class DigitalDoily extends JFrame {
 
         backgroundColorChooserButton.setBackground(Color.BLACK);
         backgroundColorChooserButton.addActionListener((ActionEvent e) -> {
-            backgroundColor = JColorChooser.showDialog(null, "Pick a color!", backgroundColor);
+            Color chosen = JColorChooser.showDialog(null, "Pick a color!", backgroundColor);
+            //A cancelled dialog gives null, then the old background is kept
+            if (chosen == null) {
+                return;
+            }
+            backgroundColor = chosen;
             backgroundColorChooserButton.setBackground(backgroundColor);
             drawingPanel.setMyBackground(backgroundColor);
-            drawingPanel.repaintAndRecreate();
+            drawingPanel.recreateInBackground();
         });
 
         colorChooserButton.setText("Color");
@@ -340,61 +357,114 @@ public class DigitalDoily extends JFrame {
         //The save button checks if there is already a filepath
         // If not, this will require the user to create one
         saveButton.addActionListener((ActionEvent e) -> {
-            if (numberOfPicturesInPicturePanel < 12) {
-                BufferedImage im = new BufferedImage(drawingPanel.getWidth(), drawingPanel.getHeight(), BufferedImage.TYPE_INT_ARGB);
-                drawingPanel.paint(im.getGraphics());
-
-                if ("".equals(pictureName)) {
-                    JFileChooser chooser = new JFileChooser();
-                    int action = chooser.showSaveDialog(DigitalDoily.this);
-                    if (action == JFileChooser.APPROVE_OPTION) {
-                        pictureName = chooser.getSelectedFile().toString();
-                    }
+            //Painted from the strokes, so the timings overlay is not saved
+            BufferedImage im = drawingPanel.renderDrawing();
 
+            if ("".equals(pictureName)) {
+                JFileChooser chooser = new JFileChooser();
+                int action = chooser.showSaveDialog(DigitalDoily.this);
+                if (action == JFileChooser.APPROVE_OPTION) {
+                    pictureName = chooser.getSelectedFile().toString();
                 }
-                if (!"".equals(pictureName)) {
-                    try {
-                        ImageIO.write(im, "PNG", new File(pictureName + ".png"));
-                        savePannelInFile();
-                    } catch (IOException ex) {
-                        Logger.getLogger(DigitalDoily.class.getName()).log(Level.SEVERE, null, ex);
-                    }
+
+            }
+            if (!"".equals(pictureName)) {
+                try {
+                    ImageIO.write(im, "PNG", new File(pictureName + ".png"));
+                    savePannelInFile();
+                } catch (IOException ex) {
+                    Logger.getLogger(DigitalDoily.class.getName()).log(Level.SEVERE, null, ex);
                 }
             }
         });
         JButton saveAsButton = new JButton("SaveAs");
         saveAsButton.addActionListener((ActionEvent e) -> {
-            if (numberOfPicturesInPicturePanel < 12) {
-                JFileChooser chooser = new JFileChooser();
-                int action = chooser.showSaveDialog(DigitalDoily.this);
-                if (action == JFileChooser.APPROVE_OPTION) {
-                    pictureName = chooser.getSelectedFile().toString();
-                    if (pictureName.length() > 4 && pictureName.endsWith(".png")) {
-                        pictureName = pictureName.substring(0, pictureName.length() - 4);
-                    }
-                    BufferedImage im = new BufferedImage(drawingPanel.getWidth(), drawingPanel.getHeight(), BufferedImage.TYPE_INT_ARGB);
-                    drawingPanel.paint(im.getGraphics());
-
-                    try {
-                        ImageIO.write(im, "PNG", new File(pictureName + ".png"));
-                        savePannelInFile();
-                    } catch (IOException ex) {
-                        Logger.getLogger(DigitalDoily.class.getName()).log(Level.SEVERE, null, ex);
-                    }
+            JFileChooser chooser = new JFileChooser();
+            int action = chooser.showSaveDialog(DigitalDoily.this);
+            if (action == JFileChooser.APPROVE_OPTION) {
+                pictureName = chooser.getSelectedFile().toString();
+                if (pictureName.length() > 4 && pictureName.endsWith(".png")) {
+                    pictureName = pictureName.substring(0, pictureName.length() - 4);
+                }
+                BufferedImage im = drawingPanel.renderDrawing();
 
+                try {
+                    ImageIO.write(im, "PNG", new File(pictureName + ".png"));
+                    savePannelInFile();
+                } catch (IOException ex) {
+                    Logger.getLogger(DigitalDoily.class.getName()).log(Level.SEVERE, null, ex);
                 }
+
             }
         });
+        //The export button writes the drawing at any size, it can be bigger than the screen
+        JButton exportButton = new JButton("Export");
+        exportButton.addActionListener((ActionEvent e) -> {
+            exportPicture();
+        });
         savePanel.add(saveAsButton);
         savePanel.add(saveButton);
+        savePanel.add(exportButton);
         controlPanel.add(savePanel);
     }
 
+    /**
+     * Asks the user for a width and a file and writes the current drawing
+     * there. The height keeps the proportions of the drawing panel. If the
+     * file name ends with .svg the strokes are written as an SVG picture,
+     * otherwise as a PNG painted in bands. Both are written on a background
+     * thread, so the picture can be much bigger than the memory would allow
+     * for one image.
+     */
+    public void exportPicture() {
+        String answer = JOptionPane.showInputDialog(this, "Width of the picture, in pixels:",
+                Integer.toString(drawingPanel.getWidth() * 4));
+        if (answer == null) {
+            return;
+        }
+        int width = -1;
+        try {
+            width = Integer.parseInt(answer.trim());
+        } catch (NumberFormatException ex) {
+            //Handled below, like a negative width
+        }
+        if (width <= 0 || drawingPanel.getWidth() <= 0) {
+            JOptionPane.showMessageDialog(this, "The width must be a positive number!");
+            return;
+        }
+        int pictureWidth = width;
+        int pictureHeight = (int) Math.max(1, (long) width * drawingPanel.getHeight() / drawingPanel.getWidth());
+        JFileChooser chooser = new JFileChooser();
+        if (chooser.showSaveDialog(DigitalDoily.this) != JFileChooser.APPROVE_OPTION) {
+            return;
+        }
+        String path = chooser.getSelectedFile().toString();
+        boolean svg = path.toLowerCase().endsWith(".svg");
+        File file = new File(svg || path.endsWith(".png") ? path : path + ".png");
+        //The scene is a copy, so the user can keep drawing
+        DoilyScene scene = new DoilyScene(drawingPanel.getHistory(), drawingPanel.getSectors(),
+                drawingPanel.getReflect(), drawingPanel.getBars(), drawingPanel.getMyBackgroundColor());
+        Thread exporter = new Thread(() -> {
+            try {
+                if (svg) {
+                    new SvgExporter(new DoilyRenderer()).export(scene, pictureWidth, pictureHeight, file);
+                } else {
+                    new TiledExporter(new DoilyRenderer()).export(scene, pictureWidth, pictureHeight, file);
+                }
+            } catch (IOException ex) {
+                Logger.getLogger(DigitalDoily.class.getName()).log(Level.SEVERE, null, ex);
+                SwingUtilities.invokeLater(() -> JOptionPane.showMessageDialog(this, "Error in exporting the picture!"));
+            }
+        }, "Exporter");
+        exporter.start();
+    }
+
     /**
      * Adds the pictures from file to the picturePanel. But will not load the
-     * data from it to memory. It does this by just reading the filePath lines
-     * in the file, then painting them and creating objects containing their
-     * index.
+     * data from it to memory. It does this by giving the archive to the
+     * gallery, which reads the picture paths from the index of the archive
+     * only for the pictures in sight. If the archive doesn't exist, the
+     * drawings from the old text save file are moved to it first.
      *
      * @param filePath File from which the data is read and saved in the current
      * panels
@@ -402,93 +472,16 @@ public class DigitalDoily extends JFrame {
     public void addPicturesFromFile(String filePath) {
         File file = new File(filePath);
         try {
-            int tempNumberOfPictures = 0;
-            Scanner scanner = new Scanner(file);
-            while (scanner.hasNextLine()) {
-                if (numberOfPicturesInPicturePanel == 12) {
-                    return;
-                }
-
-                String fileOfPicture = scanner.nextLine() + ".png";
-                addNewPicturePanel(fileOfPicture);
-                scanner.nextLine();
-                int lines = scanner.nextInt();
-                scanner.nextLine();
-                for (int skip = 0; skip < lines + 4; skip++) {
-                    scanner.nextLine();
-                }
-
-            }
-        } catch (FileNotFoundException ex) {
+            TextSaveMigrator.migrateOnce(new File(OLD_SAVES_FILE), file);
+            archive = new DoilyArchive(file);
+            gallery.setThumbnailSize(picturePanel.getHeight() - 20);
+            gallery.setArchive(archive);
+        } catch (IOException ex) {
             System.err.println("Error in adding images from file!");
             Logger.getLogger(DigitalDoily.class.getName()).log(Level.SEVERE, null, ex);
         }
     }
 
-    /**
-     * Adds one picture from the <code>path</code> to the current arrayList of
-     * images. Additionally, we add Listeners to the images responsible for
-     *
-     * @param path Path to the picture.
-     */
-    public void addNewPicturePanel(String path) {
-        PicturePanel panel = new PicturePanel(numberOfPicturesInPicturePanel++);
-        panel.addPicture(path);
-        panel.addMouseListener(new MouseListener() {
-            @Override
-            public void mouseClicked(MouseEvent e) {
-                //We check if the currentImage is previous clicked image
-                if (currentSelectedPicture == panel.getOrder()) {
-                    //If it is, we increment the current clickcount for the image
-                    clicks++;
-                } else {
-                    //If not, we reset the clickcount
-                    clicks = 1;
-                    //And change the color of the previous one to the background color of it's father
-                    if (currentSelectedPicture != -1) {
-                        picturePanelsArray.get(currentSelectedPicture).setBackground(picturePanel.getBackground());
-                    }
-                    currentSelectedPicture = panel.getOrder();
-                }
-                //If we click on a panel, we need to change it's borders to blue 
-                if (clicks % 2 == 1) {
-                    panel.setBackground(Color.BLUE);
-                }
-                //If it's doubleclicked, we change the borders back
-                if (clicks % 2 == 0) {
-                    panel.setBackground(picturePanel.getBackground());
-                }
-                //If the image it's doublecliked, then we paint it on the drawingPanel
-                if (e.getClickCount() == 2) {
-                    loadThisInDrawingPanel(panel.getOrder());
-                }
-            }
-
-            @Override
-            public void mousePressed(MouseEvent e) {
-            }
-
-            @Override
-            public void mouseReleased(MouseEvent e) {
-            }
-
-            @Override
-            public void mouseEntered(MouseEvent e) {
-            }
-
-            @Override
-            public void mouseExited(MouseEvent e) {
-            }
-        });
-        //At last, we add the image to the the array and to the panel
-        picturePanelsArray.add(panel);
-        scrolledPicturePanel.add(picturePanelsArray.get(picturePanelsArray.size() - 1));
-        panel.setPreferredSize(new Dimension(picturePanel.getHeight() - 20, picturePanel.getHeight() - 20));
-
-        setVisible(true);
-        picturePanel.repaint();
-    }
-
     /**
      * Load the selected image in the drawing panel.
      *
@@ -496,7 +489,7 @@ public class DigitalDoily extends JFrame {
      */
     public void loadThisInDrawingPanel(int position) {
         addPictures(position);
-        drawingPanel.repaintAndRecreate();
+        drawingPanel.recreateInBackground();
     }
 
     /**
@@ -506,151 +499,41 @@ public class DigitalDoily extends JFrame {
      * @param n Position of loaded image in the save file
      */
     public void addPictures(int n) {
-
-        File file = new File("saves_aas1u16.txt");
-
-        try (Scanner scanner = new Scanner(file)) {
-            //First we skip the unwanted lines
-            for (int i = 0; i < n; i++) {
-                scanner.nextLine();
-                scanner.nextLine();
-                int lines = scanner.nextInt();
-                scanner.nextLine();
-                for (int skip = 0; skip < lines + 4; skip++) {
-                    scanner.nextLine();
-                }
-            }
-            //Then we save all the fields and send them to the panel
-            //First we read the fileName
-            pictureName = scanner.nextLine();
-            //Then the singular fields ( fields that are by themselfs, not in arrays)
-            int size = scanner.nextInt();
-            int sectors = scanner.nextInt();
-            int bars = scanner.nextInt();
-            int reflect = scanner.nextInt();
-            int step = scanner.nextInt();
-            int start = scanner.nextInt();
-            int backgroundColorRGB = scanner.nextInt();
-            sizeTextField.setText(Integer.toString(size));
-            sectorsTextField.setText(Integer.toString(sectors));
-            drawingPanel.setParameters(size, sectors, bars, reflect, step, start, backgroundColorRGB);
-            scanner.nextLine();
-            //Then we read the number of steps
-            int lineSize = scanner.nextInt();
-            scanner.nextLine();
-            //Then we read the colors
-            ArrayList<Color> tempColor = new ArrayList<>();
-            for (int i = 0; i < lineSize; i++) {
-                tempColor.add(new Color(scanner.nextInt()));
-            }
-            drawingPanel.setColorArray(tempColor);
-            scanner.nextLine();
-
-            //Then we read sizes of the lines
-            ArrayList<Integer> tempSizes = new ArrayList<>();
-            for (int i = 0; i < lineSize; i++) {
-                tempSizes.add(scanner.nextInt());
-            }
-            drawingPanel.setSizesArray(tempSizes);
-            scanner.nextLine();
-            //Then we read the windowSizes
-            ArrayList<Point2D> tempWindowSizes = new ArrayList<>();
-            for (int i = 0; i < lineSize; i++) {
-                int x = scanner.nextInt();
-                int y = scanner.nextInt();
-                tempWindowSizes.add(new Point(x, y));
-            }
-            drawingPanel.setWindowSizesArray(tempWindowSizes);
-            scanner.nextLine();
-            //At last we read the points
-            ArrayList<ArrayList<Point2D>> points = new ArrayList<>();
-            for (int i = 0; i < lineSize; i++) {
-                Scanner lineScanner = new Scanner(scanner.nextLine());
-                ArrayList<Point2D> stepPoints = new ArrayList<>();
-                while (lineScanner.hasNext()) {
-                    int x = lineScanner.nextInt();
-                    int y = lineScanner.nextInt();
-                    stepPoints.add(new Point2D.Double(x, y));
-                }
-                points.add(stepPoints);
-            }
-            drawingPanel.setPointsArray(points);
-            //Finally, we read the starts array (clear steps)
-            ArrayList<Integer> starts = new ArrayList<>();
-            Scanner lineScanner = new Scanner(scanner.nextLine());
-            while (lineScanner.hasNext()) {
-                starts.add(lineScanner.nextInt());
-            }
-            drawingPanel.setCurrentStarts(starts);
-
+        if (archive == null) {
+            return;
+        }
+        try {
+            //The index gives the position of the record, so only it is read
+            DoilyRecord record = archive.read(n);
+            pictureName = record.getName();
+            sizeTextField.setText(Integer.toString(record.getSize()));
+            sectorsTextField.setText(Integer.toString(record.getSectors()));
+            drawingPanel.setParameters(record.getSize(), record.getSectors(), record.getBars() ? 1 : 0,
+                    record.getReflect() ? 1 : 0, record.getBackground());
+            drawingPanel.setHistory(record.toHistory());
         } catch (IOException e) {
-
+            System.err.println("Error in reading image!");
         }
     }
 
     /**
      * Saves the current panel at the end of the save file. This will not
      * override any other saves, but will share the path with previous one if
-     * there are any. We first get all the data from the current drawing panel
-     * and then write them based on the categories: -file location -singular
-     * values -colours -sizes -windowSizes -points -starts
+     * there are any. We get all the data from the current drawing panel in a
+     * record, which the archive adds after the other ones.
      */
     public void savePannelInFile() {
+        if (archive == null) {
+            return;
+        }
         try {
-            FileWriter fw = new FileWriter("saves_aas1u16.txt", true);
-            BufferedWriter bw = new BufferedWriter(fw);
-            try (PrintWriter out = new PrintWriter(bw)) {
-                //First write the file location
-                out.println(pictureName);
-                int bars = 0, reflect = 0;
-                //Then the singular values
-                if (drawingPanel.getBars() == true) {
-                    bars = 1;
-                }
-                if (drawingPanel.getReflect() == true) {
-                    reflect = 1;
-                }
-
-                out.println(drawingPanel.getCurrentSize() + " " + drawingPanel.getSectors() + " "
-                        + bars + " " + reflect + " " + drawingPanel.getCurrentStep() + " "
-                        + drawingPanel.getCurrentStart() + " " + drawingPanel.getMyBackgroundColor());
-                ArrayList<ArrayList<Point2D>> tempArr = drawingPanel.getPointsArray();
-                out.println(tempArr.size());
-                ArrayList<Color> tempColor = drawingPanel.getColorArray();
-                //Then the print the colours
-                tempColor.stream().forEach((color) -> {
-                    out.print(color.getRGB() + " ");
-                });
-                out.println();
-                //Then print the line sizes
-                ArrayList<Integer> tempSizes = drawingPanel.getSizesArray();
-                tempSizes.stream().forEach((size) -> {
-                    out.print((int) size + " ");
-                });
-                out.println();
-                //Then we print windowSizes
-                ArrayList<Point2D> tempWindowSizes = drawingPanel.getWindowSizes();
-                tempWindowSizes.stream().forEach((windowSize) -> {
-                    out.print((int) windowSize.getX() + " " + (int) windowSize.getY() + " ");
-                });
-                out.println();
-                //Then the points
-                for (int i = 0; i < tempArr.size(); i++) {
-                    for (Point2D point : tempArr.get(i)) {
-                        out.print((int) point.getX() + " " + (int) point.getY() + " ");
-                    }
-                    out.println();
-                }
-                ArrayList<Integer> tempCurrentStarts = drawingPanel.getCurrentStarts();
-                out.print("0");
-                //And then we prin the currentStarts
-                tempCurrentStarts.stream().forEach((currentStart) -> {
-                    out.print((int) currentStart);
-                });
-                out.println();
-            }
-            //Lastly, we add the picture to the picturePanel
-            addNewPicturePanel(pictureName + ".png");
+            //Only the steps that are not undone are saved
+            archive.append(new DoilyRecord(pictureName, drawingPanel.getCurrentSize(), drawingPanel.getSectors(),
+                    drawingPanel.getBars(), drawingPanel.getReflect(), drawingPanel.getMyBackgroundColor(),
+                    drawingPanel.getCurrentStart(), drawingPanel.getCurrentStarts(), drawingPanel.getStrokes(),
+                    drawingPanel.getCurrentStep()));
+            //Lastly, we show the picture in the gallery
+            gallery.pictureAdded();
 
         } catch (IOException e) {
             System.err.println("Error in writing file!");
@@ -659,79 +542,19 @@ public class DigitalDoily extends JFrame {
 
     /**
      * Deletes the image at position <code>image</code>from the saves file, not
-     * from disk. We do this by reading from the file and writing the remaining
-     * info in a temporary file. Then, deletes the temporary file.
+     * from disk. The record is only marked as dead in the archive, its space
+     * is taken back later on a background thread.
      *
      * @param image Order number of image.
      */
     public void deleteImage(int image) {
+        if (archive == null) {
+            return;
+        }
         try {
-
-            File file = new File("saves_aas1u16.txt");
-            File tempFile = new File("saves_aas1u16Temp.txt");
-            BufferedWriter bw;
-            Scanner scanner;
-            String line;
-            try (FileWriter fw = new FileWriter(tempFile)) {
-                bw = new BufferedWriter(new FileWriter(tempFile, false));
-                //First we add the images that are before the image that we want to delete
-                scanner = new Scanner(file);
-                for (int i = 0; i < image; i++) {
-                    line = scanner.nextLine();
-                    bw.write(line + System.getProperty("line.separator"));
-                    line = scanner.nextLine();
-                    bw.write(line + System.getProperty("line.separator"));
-                    int lines = scanner.nextInt();
-                    bw.write(lines + System.getProperty("line.separator"));
-                    scanner.nextLine();
-                    for (int skip = 0; skip < lines + 4; skip++) {
-                        line = scanner.nextLine();
-                        bw.write(line + System.getProperty("line.separator"));
-                    }
-
-                }
-                //Then we skip the unwanted lines
-                scanner.nextLine();
-                scanner.nextLine();
-                int lines = scanner.nextInt();
-                scanner.nextLine();
-                for (int skip = 0; skip < lines + 4; skip++) {
-                    scanner.nextLine();
-                }
-                //Then we get prin the rest of the file to the temp file
-                while (scanner.hasNextLine()) {
-                    line = scanner.nextLine();
-                    bw.write(line + System.getProperty("line.separator"));
-                }
-                scanner.close();
-                bw.close();
-            }
-
-            //Then we try to rename the temp file to the new one
-            boolean b = tempFile.renameTo(new File("saves_aas1u16.txt"));
-            //If this doesn't succeed we rewrite the saves file
-            if (b == false) {
-                scanner = new Scanner(tempFile);
-                bw = new BufferedWriter(new FileWriter("saves_aas1u16.txt", false));
-                while (scanner.hasNextLine()) {
-                    line = scanner.nextLine();
-                    bw.write(line + System.getProperty("line.separator"));
-                }
-                bw.close();
-                scanner.close();
-
-            }
-            //Then we remove the image from the panel
-            for (int i = 0; i < numberOfPicturesInPicturePanel; i++) {
-                picturePanel.remove(picturePanelsArray.get(i));
-            }
-            //Then we remove the image from the array and update it.
-            numberOfPicturesInPicturePanel--;
-            picturePanelsArray.remove(currentSelectedPicture);
-            for (int i = 0; i < numberOfPicturesInPicturePanel; i++) {
-                picturePanelsArray.get(i).setOrder(i);
-                picturePanel.add(picturePanelsArray.get(i));
-            }
+            archive.delete(image);
+            //Then we remove the image from the gallery
+            gallery.pictureRemoved(image);
         } catch (IOException e) {
             System.err.println("Error in deleting image!");
         }
@@ -0,0 +1,131 @@
+
+import java.awt.Rectangle;
+import java.util.Arrays;
+
+/**
+ * This class splits an image in square tiles and remembers which of them were
+ * changed (are dirty) since the last time the image was shown. The panel
+ * marks the tiles touched by every line it draws and then repaints just the
+ * bounds of the dirty tiles instead of the whole image.
+ *
+ * @author Alexandru Amarandei Stanescu aas1u16
+ */
+public class DirtyTiles {
+
+    private final int tileSize;
+    private int width = 0, height = 0, columns = 0, rows = 0;
+    private boolean[] dirty = new boolean[0];
+    private int dirtyCount = 0;
+    //Bounds of the dirty tiles, in tiles
+    private int minColumn, maxColumn, minRow, maxRow;
+
+    /**
+     * Creates the tiles with sides of <code>tileSize</code> pixels.
+     *
+     * @param tileSize Side of a tile
+     */
+    public DirtyTiles(int tileSize) {
+        this.tileSize = tileSize;
+        clear();
+    }
+
+    /**
+     * Changes the size of the image to <code>newWidth</code> x
+     * <code>newHeight</code>. If it is different from the current one, all
+     * the tiles are clean again.
+     *
+     * @param newWidth Width of the image
+     * @param newHeight Height of the image
+     */
+    public void resize(int newWidth, int newHeight) {
+        if (newWidth == width && newHeight == height) {
+            return;
+        }
+        width = newWidth;
+        height = newHeight;
+        columns = (width + tileSize - 1) / tileSize;
+        rows = (height + tileSize - 1) / tileSize;
+        dirty = new boolean[columns * rows];
+        clear();
+    }
+
+    /**
+     * Marks the tiles touched by a line from (<code>x1</code>,
+     * <code>y1</code>) to (<code>x2</code>, <code>y2</code>) that is
+     * <code>lineSize</code> wide. Long lines are split in pieces no longer
+     * than a tile, so only the tiles near the line are marked.
+     *
+     * @param x1 X of the first point
+     * @param y1 Y of the first point
+     * @param x2 X of the second point
+     * @param y2 Y of the second point
+     * @param lineSize Width of the line
+     */
+    public void markLine(double x1, double y1, double x2, double y2, int lineSize) {
+        double margin = lineSize / 2d + 1;
+        double length = Math.max(Math.abs(x2 - x1), Math.abs(y2 - y1));
+        int pieces = Math.max(1, (int) Math.ceil(length / tileSize));
+        for (int i = 0; i < pieces; i++) {
+            double startX = x1 + (x2 - x1) * i / pieces, startY = y1 + (y2 - y1) * i / pieces;
+            double endX = x1 + (x2 - x1) * (i + 1) / pieces, endY = y1 + (y2 - y1) * (i + 1) / pieces;
+            markRectangle(Math.min(startX, endX) - margin, Math.min(startY, endY) - margin,
+                    Math.max(startX, endX) + margin, Math.max(startY, endY) + margin);
+        }
+    }
+
+    /**
+     * Marks the tiles touched by the rectangle from (<code>left</code>,
+     * <code>top</code>) to (<code>right</code>, <code>bottom</code>).
+     *
+     * @param left Left side
+     * @param top Top side
+     * @param right Right side
+     * @param bottom Bottom side
+     */
+    public void markRectangle(double left, double top, double right, double bottom) {
+        int firstColumn = Math.max(0, (int) Math.floor(left / tileSize));
+        int lastColumn = Math.min(columns - 1, (int) Math.floor(right / tileSize));
+        int firstRow = Math.max(0, (int) Math.floor(top / tileSize));
+        int lastRow = Math.min(rows - 1, (int) Math.floor(bottom / tileSize));
+        for (int row = firstRow; row <= lastRow; row++) {
+            for (int column = firstColumn; column <= lastColumn; column++) {
+                if (!dirty[row * columns + column]) {
+                    dirty[row * columns + column] = true;
+                    dirtyCount++;
+                    minColumn = Math.min(minColumn, column);
+                    maxColumn = Math.max(maxColumn, column);
+                    minRow = Math.min(minRow, row);
+                    maxRow = Math.max(maxRow, row);
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns the bounds in pixels of all the dirty tiles, cut to the image.
+     *
+     * @return The bounds or null if no tile is dirty
+     */
+    public Rectangle getDirtyBounds() {
+        if (dirtyCount == 0) {
+            return null;
+        }
+        int x = minColumn * tileSize, y = minRow * tileSize;
+        int right = Math.min(width, (maxColumn + 1) * tileSize), bottom = Math.min(height, (maxRow + 1) * tileSize);
+        return new Rectangle(x, y, right - x, bottom - y);
+    }
+
+    /**
+     * Marks all the tiles as clean.
+     */
+    public void clear() {
+        if (dirtyCount > 0) {
+            Arrays.fill(dirty, false);
+        }
+        dirtyCount = 0;
+        minColumn = Integer.MAX_VALUE;
+        minRow = Integer.MAX_VALUE;
+        maxColumn = -1;
+        maxRow = -1;
+    }
+}
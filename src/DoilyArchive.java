@@ -0,0 +1,563 @@
+
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * This class keeps the saved drawings in one binary file. The file starts
+ * with a header that says where the index is. The index holds the flags,
+ * offset, length and picture path of every record, so a drawing can be read
+ * with one seek, without reading the ones before it.
+ *
+ * A new record is written after the end of the file, followed by a new index.
+ * Only then the header is changed to point to the new index, so if the
+ * program stops in the middle of a save the old index is still valid. A
+ * record is deleted by setting the dead flag of its index entry, which is a
+ * single byte. The space of the dead records and old indexes is taken back by
+ * a compaction on a background thread, which copies the live records in a new
+ * file and renames it over the archive.
+ *
+ * The header is: magic number, version, number of records, offset of the
+ * index (long) and length of the index. Every index entry is: flags (1 for a
+ * dead record), offset of the record (long), length of the record and the
+ * picture path.
+ *
+ * All the methods can be called from any thread.
+ *
+ * @author Alexandru Amarandei Stanescu aas1u16
+ */
+public class DoilyArchive {
+
+    private static final int MAGIC = 0x444F594C;
+    private static final int VERSION = 2;
+    //The first version had no flags in the index
+    private static final int VERSION_WITHOUT_FLAGS = 1;
+    private static final int HEADER_SIZE = 24;
+    private static final int FLAG_DEAD = 1;
+    //The archive is compacted when at least this many bytes and a quarter of it are dead
+    private static final long COMPACT_MIN_DEAD_BYTES = 64 * 1024;
+    private static final int COMPACT_DEAD_FRACTION = 4;
+
+    private final File file;
+    //Writes the records in chunks, the same buffer is used for every save
+    private final RecordWriter writer = new RecordWriter(64 * 1024);
+    //The index of the live records, kept in memory
+    private final ArrayList<Long> offsets = new ArrayList<>();
+    private final ArrayList<Integer> lengths = new ArrayList<>();
+    private final ArrayList<String> names = new ArrayList<>();
+    //Position in the file of the index entry of every live record
+    private final ArrayList<Long> entryPositions = new ArrayList<>();
+    //Index of the live record at every offset, so a record is found by its key without a search
+    private final HashMap<Long, Integer> indexOfOffset = new HashMap<>();
+    //Bytes of the file that are not used by a live record, the index or the header
+    private long deadBytes = 0;
+    //Changes with every save and delete, so a compaction knows if it is too old
+    private long modifications = 0;
+    //Changes with every compaction, which moves the records to new offsets
+    private long generation = 0;
+    private boolean compacting = false;
+    private ExecutorService compactor = null;
+
+    /**
+     * Opens the archive <code>file</code> and reads its index. If the file
+     * doesn't exist, an empty archive is created.
+     *
+     * @param file File of the archive
+     * @throws IOException If the file can't be read or is not an archive
+     */
+    public DoilyArchive(File file) throws IOException {
+        this.file = file;
+        if (!file.exists()) {
+            replaceArchive(file, new ArrayList<>(), new ArrayList<>(), new ArrayList<>(), null);
+        }
+        if (readIndex() == VERSION_WITHOUT_FLAGS) {
+            //Old archives are copied once in the new format
+            replaceArchive(file, offsets, lengths, names, file);
+            readIndex();
+        }
+    }
+
+    /**
+     * Returns the number of records.
+     *
+     * @return number of records
+     */
+    public synchronized int size() {
+        return names.size();
+    }
+
+    /**
+     * Returns the picture path of record <code>n</code>, without the
+     * extension.
+     *
+     * @param n Index of the record
+     * @return Picture path
+     */
+    public synchronized String getName(int n) {
+        return names.get(n);
+    }
+
+    /**
+     * Returns a key for record <code>n</code> that doesn't change when other
+     * records are saved or deleted. A record is never written again at the
+     * same offset, so the offset is unique until the next compaction.
+     *
+     * @param n Index of the record
+     * @return Key of the record
+     */
+    public synchronized String getRecordKey(int n) {
+        return generation + ":" + offsets.get(n);
+    }
+
+    /**
+     * Returns the number of bytes used by deleted records and old indexes.
+     *
+     * @return dead bytes
+     */
+    public synchronized long getDeadBytes() {
+        return deadBytes;
+    }
+
+    /**
+     * Reads record <code>n</code>. The record is read in a heap buffer of its
+     * length and its points are decoded into a store of the right size. It is
+     * not mapped in memory, because a mapping stays open until it is garbage
+     * collected and an open mapping stops the archive from being replaced by
+     * a compaction on some systems. Only finding the record holds the lock,
+     * so many records can be read and decoded at the same time.
+     *
+     * @param n Index of the record
+     * @return The record
+     * @throws IOException If the record can't be read
+     */
+    public DoilyRecord read(int n) throws IOException {
+        return readRecord(n, null);
+    }
+
+    /**
+     * Reads the record with the key <code>key</code>, if it is still in the
+     * archive.
+     *
+     * @param key Key from {@link #getRecordKey(int)}
+     * @return The record, or null if it was deleted or moved
+     * @throws IOException If the record can't be read
+     */
+    public DoilyRecord read(String key) throws IOException {
+        return readRecord(-1, key);
+    }
+
+    /**
+     * Reads record <code>n</code>, or the record with the key
+     * <code>key</code> if it is not null. The position of the record is
+     * taken with the lock and the file is opened before it is released, so a
+     * compaction that renames a new file over the archive can't move the
+     * record. Written records never change, so they are read and decoded
+     * without the lock.
+     *
+     * @param n Index of the record
+     * @param key Key of the record, or null to use <code>n</code>
+     * @return The record, or null if there is no record with the key
+     * @throws IOException If the record can't be read
+     */
+    private DoilyRecord readRecord(int n, String key) throws IOException {
+        long offset;
+        int length;
+        String name;
+        FileChannel channel;
+        synchronized (this) {
+            if (key != null) {
+                n = indexOfKey(key);
+                if (n < 0) {
+                    return null;
+                }
+            }
+            offset = offsets.get(n);
+            length = lengths.get(n);
+            name = names.get(n);
+            channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+        }
+        try (FileChannel in = channel) {
+            ByteBuffer buffer = ByteBuffer.allocate(length);
+            readFully(in, buffer, offset);
+            buffer.flip();
+            return RecordCodec.read(buffer, name);
+        }
+    }
+
+    /**
+     * Returns the index of the record with the key <code>key</code>. The key
+     * holds the generation and the offset of the record, so the record is
+     * looked up by its offset if the archive was not compacted since.
+     *
+     * @param key Key from {@link #getRecordKey(int)}
+     * @return Index of the record, or -1 if it was deleted or moved
+     */
+    private synchronized int indexOfKey(String key) {
+        int separator = key.indexOf(':');
+        try {
+            if (separator < 0 || Long.parseLong(key.substring(0, separator)) != generation) {
+                return -1;
+            }
+            Integer n = indexOfOffset.get(Long.parseLong(key.substring(separator + 1)));
+            return n == null ? -1 : n;
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    /**
+     * Adds <code>record</code> at the end of the archive. The record is
+     * streamed to the file in chunks, so saving needs the same memory for any
+     * number of points. Nothing is visible until the header is changed at the
+     * end.
+     *
+     * @param record Record to add
+     * @throws IOException If the archive can't be written
+     */
+    public synchronized void append(DoilyRecord record) throws IOException {
+        modifications++;
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            //The record and the new index go after everything else
+            long offset = channel.size();
+            writer.start(channel, offset);
+            RecordCodec.write(record, writer);
+            long length = writer.finish();
+            if (length > Integer.MAX_VALUE) {
+                throw new IOException("The drawing is too big to be saved");
+            }
+            offsets.add(offset);
+            lengths.add((int) length);
+            names.add(record.getName());
+            ByteBuffer index = encodeIndex(offsets, lengths, names);
+            long indexOffset = offset + length;
+            int indexLength = index.remaining();
+            writeFully(channel, index, indexOffset);
+            channel.force(false);
+            //Then the header is changed to commit the save
+            writeFully(channel, encodeHeader(names.size(), indexOffset, indexLength), 0);
+            channel.force(false);
+        } finally {
+            //The index entries moved and the old index is dead now
+            readIndex();
+        }
+        compactIfNeeded();
+    }
+
+    /**
+     * Deletes record <code>n</code> by setting the dead flag of its index
+     * entry. The record stays in the file until the next compaction.
+     *
+     * @param n Index of the record
+     * @throws IOException If the archive can't be written
+     */
+    public synchronized void delete(int n) throws IOException {
+        modifications++;
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.WRITE)) {
+            writeFully(channel, ByteBuffer.wrap(new byte[]{FLAG_DEAD}), entryPositions.get(n));
+            channel.force(false);
+        }
+        deadBytes += lengths.get(n);
+        offsets.remove(n);
+        lengths.remove(n);
+        names.remove(n);
+        entryPositions.remove(n);
+        //The records after it moved one place down
+        indexOffsets();
+        compactIfNeeded();
+    }
+
+    /**
+     * Compacts the archive on a background thread if enough of it is dead and
+     * no compaction is running.
+     */
+    private synchronized void compactIfNeeded() {
+        if (compacting || deadBytes < COMPACT_MIN_DEAD_BYTES
+                || deadBytes * COMPACT_DEAD_FRACTION < file.length()) {
+            return;
+        }
+        if (compactor == null) {
+            compactor = Executors.newSingleThreadExecutor((Runnable r) -> {
+                Thread thread = new Thread(r, "Archive compactor");
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+        compacting = true;
+        compactor.execute(() -> {
+            boolean replaced = true;
+            try {
+                replaced = compact();
+            } catch (IOException e) {
+                //Not tried again until the next save or delete, so a failing compaction doesn't spin
+                Logger.getLogger(DoilyArchive.class.getName()).log(Level.SEVERE, null, e);
+            } finally {
+                synchronized (DoilyArchive.this) {
+                    compacting = false;
+                }
+            }
+            //If the archive changed while it was copied, we try again
+            if (!replaced) {
+                compactIfNeeded();
+            }
+        });
+    }
+
+    /**
+     * Copies the live records in a new file, without holding the lock, and
+     * then renames it over the archive. If the archive was changed in the
+     * meantime, the copy is thrown away.
+     *
+     * @return false if the copy was thrown away, true if it replaced the
+     * archive
+     * @throws IOException If a file can't be read or written
+     */
+    private boolean compact() throws IOException {
+        ArrayList<Long> liveOffsets;
+        ArrayList<Integer> liveLengths;
+        ArrayList<String> liveNames;
+        long version;
+        synchronized (this) {
+            liveOffsets = new ArrayList<>(offsets);
+            liveLengths = new ArrayList<>(lengths);
+            liveNames = new ArrayList<>(names);
+            version = modifications;
+        }
+        //Written records never change, so they can be copied while the archive is used
+        File tempFile = new File(file.getPath() + ".tmp");
+        writeArchive(tempFile, liveOffsets, liveLengths, liveNames, file);
+        synchronized (this) {
+            if (version != modifications) {
+                Files.deleteIfExists(tempFile.toPath());
+                return false;
+            }
+            moveOver(tempFile, file);
+            generation++;
+            readIndex();
+        }
+        return true;
+    }
+
+    /**
+     * Reads the header and the index of the archive. The dead records are
+     * left out.
+     *
+     * @return Version of the archive
+     * @throws IOException If the file can't be read or is not an archive
+     */
+    private synchronized int readIndex() throws IOException {
+        offsets.clear();
+        lengths.clear();
+        names.clear();
+        entryPositions.clear();
+        indexOfOffset.clear();
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+            readFully(channel, header, 0);
+            header.flip();
+            int version = header.getInt() == MAGIC ? header.getInt() : -1;
+            if (version != VERSION && version != VERSION_WITHOUT_FLAGS) {
+                throw new IOException(file + " is not a doily archive");
+            }
+            int count = header.getInt();
+            long indexOffset = header.getLong();
+            int indexLength = header.getInt();
+            ByteBuffer index = ByteBuffer.allocate(indexLength);
+            readFully(channel, index, indexOffset);
+            index.flip();
+            long liveBytes = 0;
+            for (int i = 0; i < count; i++) {
+                long position = indexOffset + index.position();
+                int flags = version == VERSION_WITHOUT_FLAGS ? 0 : index.get();
+                long offset = index.getLong();
+                int length = index.getInt();
+                byte[] name = new byte[index.getShort() & 0xFFFF];
+                index.get(name);
+                if ((flags & FLAG_DEAD) == 0) {
+                    offsets.add(offset);
+                    lengths.add(length);
+                    names.add(new String(name, StandardCharsets.UTF_8));
+                    entryPositions.add(position);
+                    liveBytes += length;
+                }
+            }
+            deadBytes = channel.size() - HEADER_SIZE - indexLength - liveBytes;
+            indexOffsets();
+            return version;
+        }
+    }
+
+    /**
+     * Maps the offset of every live record to its index.
+     */
+    private synchronized void indexOffsets() {
+        indexOfOffset.clear();
+        for (int n = 0; n < offsets.size(); n++) {
+            indexOfOffset.put(offsets.get(n), n);
+        }
+    }
+
+    /**
+     * Writes a new archive with the records at <code>offsets</code> in
+     * <code>source</code> in a temporary file, which then replaces
+     * <code>target</code> with one rename. This way <code>target</code> is
+     * either the old archive or the new one, never a part of it.
+     *
+     * @param target File to replace
+     * @param offsets Offsets of the records in the source
+     * @param lengths Lengths of the records
+     * @param names Picture paths of the records
+     * @param source Archive the records are copied from, or null if there
+     * are no records
+     * @throws IOException If a file can't be read or written
+     */
+    private static void replaceArchive(File target, ArrayList<Long> offsets, ArrayList<Integer> lengths,
+            ArrayList<String> names, File source) throws IOException {
+        File tempFile = new File(target.getPath() + ".tmp");
+        writeArchive(tempFile, offsets, lengths, names, source);
+        moveOver(tempFile, target);
+    }
+
+    /**
+     * Renames <code>source</code> over <code>target</code>, atomically if the
+     * file system can.
+     *
+     * @param source File to move
+     * @param target File to replace
+     * @throws IOException If the file can't be moved
+     */
+    private static void moveOver(File source, File target) throws IOException {
+        try {
+            Files.move(source.toPath(), target.toPath(), StandardCopyOption.REPLACE_EXISTING,
+                    StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(source.toPath(), target.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    /**
+     * Writes a new archive in <code>target</code> with the records at
+     * <code>offsets</code> in <code>source</code>.
+     *
+     * @param target File to write
+     * @param offsets Offsets of the records in the source
+     * @param lengths Lengths of the records
+     * @param names Picture paths of the records
+     * @param source Archive the records are copied from, or null if there
+     * are no records
+     * @throws IOException If a file can't be read or written
+     */
+    private static void writeArchive(File target, ArrayList<Long> offsets, ArrayList<Integer> lengths,
+            ArrayList<String> names, File source) throws IOException {
+        try (FileChannel out = FileChannel.open(target.toPath(), StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            ArrayList<Long> newOffsets = new ArrayList<>();
+            long position = HEADER_SIZE;
+            if (source != null) {
+                try (FileChannel in = FileChannel.open(source.toPath(), StandardOpenOption.READ)) {
+                    for (int i = 0; i < offsets.size(); i++) {
+                        newOffsets.add(position);
+                        long copied = 0;
+                        out.position(position);
+                        while (copied < lengths.get(i)) {
+                            copied += in.transferTo(offsets.get(i) + copied, lengths.get(i) - copied, out);
+                        }
+                        position += lengths.get(i);
+                    }
+                }
+            }
+            ByteBuffer index = encodeIndex(newOffsets, lengths, names);
+            int indexLength = index.remaining();
+            writeFully(out, index, position);
+            writeFully(out, encodeHeader(names.size(), position, indexLength), 0);
+            out.force(true);
+        }
+    }
+
+    /**
+     * Encodes the header of the archive.
+     *
+     * @param count Number of records
+     * @param indexOffset Offset of the index
+     * @param indexLength Length of the index
+     * @return Buffer ready to be written
+     */
+    private static ByteBuffer encodeHeader(int count, long indexOffset, int indexLength) {
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+        header.putInt(MAGIC).putInt(VERSION).putInt(count).putLong(indexOffset).putInt(indexLength);
+        header.flip();
+        return header;
+    }
+
+    /**
+     * Encodes the index of the archive, with every record alive.
+     *
+     * @param offsets Offsets of the records
+     * @param lengths Lengths of the records
+     * @param names Picture paths of the records
+     * @return Buffer ready to be written
+     */
+    private static ByteBuffer encodeIndex(ArrayList<Long> offsets, ArrayList<Integer> lengths,
+            ArrayList<String> names) {
+        ArrayList<byte[]> encodedNames = new ArrayList<>();
+        int length = 0;
+        for (String name : names) {
+            byte[] encoded = name.getBytes(StandardCharsets.UTF_8);
+            encodedNames.add(encoded);
+            length += 1 + 8 + 4 + 2 + encoded.length;
+        }
+        ByteBuffer index = ByteBuffer.allocate(length);
+        for (int i = 0; i < names.size(); i++) {
+            index.put((byte) 0).putLong(offsets.get(i)).putInt(lengths.get(i));
+            index.putShort((short) encodedNames.get(i).length).put(encodedNames.get(i));
+        }
+        index.flip();
+        return index;
+    }
+
+    /**
+     * Reads from <code>channel</code> at <code>position</code> until
+     * <code>buffer</code> is full.
+     *
+     * @param channel Where to read from
+     * @param buffer Where to read to
+     * @param position Position in the channel
+     * @throws IOException If the file ends before the buffer is full
+     */
+    private static void readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            int read = channel.read(buffer, position);
+            if (read < 0) {
+                throw new EOFException("The archive ends too early");
+            }
+            position += read;
+        }
+    }
+
+    /**
+     * Writes all of <code>buffer</code> to <code>channel</code> at
+     * <code>position</code>.
+     *
+     * @param channel Where to write to
+     * @param buffer What to write
+     * @param position Position in the channel
+     * @throws IOException If the file can't be written
+     */
+    private static void writeFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            position += channel.write(buffer, position);
+        }
+    }
+}
@@ -0,0 +1,153 @@
+
+import java.util.ArrayList;
+
+/**
+ * This class holds one saved drawing: the path of its picture, the settings
+ * of the panel, the strokes that were not undone and the starts (clears) of
+ * the history. It is what the save archive reads and writes.
+ *
+ * @author Alexandru Amarandei Stanescu aas1u16
+ */
+public class DoilyRecord {
+
+    //Path of the picture, without the .png extension
+    private final String name;
+    private final int size, sectors, background;
+    private final boolean showBars, reflect;
+    //Start of the history and the starts before every clear
+    private final int start;
+    private final ArrayList<Integer> starts;
+    //Only the first strokeCount strokes of the store are saved
+    private final StrokeStore strokes;
+    private final int strokeCount;
+
+    /**
+     * Creates a record with the first <code>strokeCount</code> strokes of
+     * <code>strokes</code>.
+     *
+     * @param name Path of the picture, without the extension
+     * @param size Line size
+     * @param sectors Number of sectors
+     * @param showBars If the bars are shown
+     * @param reflect If the points are reflected
+     * @param background Background colour in RGB
+     * @param start Current start
+     * @param starts Previous starts
+     * @param strokes Strokes of the drawing
+     * @param strokeCount Number of strokes that are saved
+     */
+    public DoilyRecord(String name, int size, int sectors, boolean showBars, boolean reflect, int background,
+            int start, ArrayList<Integer> starts, StrokeStore strokes, int strokeCount) {
+        this.name = name;
+        this.size = size;
+        this.sectors = sectors;
+        this.showBars = showBars;
+        this.reflect = reflect;
+        this.background = background;
+        this.start = start;
+        this.starts = starts;
+        this.strokes = strokes;
+        this.strokeCount = strokeCount;
+    }
+
+    /**
+     * Creates a history for the drawing panel from the saved strokes and
+     * starts.
+     *
+     * @return New history
+     */
+    public DrawingHistory toHistory() {
+        return new DrawingHistory(strokes, strokeCount, start, starts);
+    }
+
+    /**
+     * Returns the path of the picture, without the .png extension.
+     *
+     * @return name
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Returns the line size.
+     *
+     * @return size
+     */
+    public int getSize() {
+        return size;
+    }
+
+    /**
+     * Returns the number of sectors.
+     *
+     * @return sectors
+     */
+    public int getSectors() {
+        return sectors;
+    }
+
+    /**
+     * Returns if the bars are shown or not.
+     *
+     * @return true if yes, false if no
+     */
+    public boolean getBars() {
+        return showBars;
+    }
+
+    /**
+     * Returns if the points are reflected or not.
+     *
+     * @return true if yes, false if no
+     */
+    public boolean getReflect() {
+        return reflect;
+    }
+
+    /**
+     * Returns the background colour in RGB.
+     *
+     * @return background colour in RGB
+     */
+    public int getBackground() {
+        return background;
+    }
+
+    /**
+     * Returns the current start.
+     *
+     * @return start
+     */
+    public int getStart() {
+        return start;
+    }
+
+    /**
+     * Returns the previous starts.
+     *
+     * @return ArrayList of Integers.
+     */
+    public ArrayList<Integer> getStarts() {
+        return starts;
+    }
+
+    /**
+     * Returns the store with the strokes. Only the first
+     * <code>getStrokeCount()</code> strokes belong to the record.
+     *
+     * @return StrokeStore of the record.
+     */
+    public StrokeStore getStrokes() {
+        return strokes;
+    }
+
+    /**
+     * Returns the number of saved strokes.
+     *
+     * @return number of strokes
+     */
+    public int getStrokeCount() {
+        return strokeCount;
+    }
+}
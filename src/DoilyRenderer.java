@@ -0,0 +1,347 @@
+
+import java.awt.BasicStroke;
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.geom.AffineTransform;
+import java.awt.image.BufferedImage;
+
+/**
+ * This class paints doilies for an image of a given size, without needing the
+ * drawing panel. The strokes are scaled from the window they were drawn in to
+ * the size of the image, rotated for every sector and drawn as paths. A
+ * stroke painted at least twice smaller than it was drawn is taken from one
+ * of its simpler levels, so the work follows the size of the image and not
+ * the number of mouse points. It only
+ * uses the scene and the size it is given, never a component, so it can
+ * paint into any Graphics2D. Every renderer has its own buffers, so a
+ * renderer should be used by only one thread at a time, and many drawings can
+ * be painted in parallel with one renderer for every thread.
+ *
+ * @author Alexandru Amarandei Stanescu aas1u16
+ */
+public class DoilyRenderer {
+
+    //Sine and cosine tables for the sectors and buffers for the rotated points
+    private final SymmetryEngine symmetry = new SymmetryEngine(1);
+    //Draws the rotated strokes as paths
+    private final StrokeRenderer strokeRenderer = new StrokeRenderer();
+
+    /**
+     * Paints <code>scene</code> into a new image of <code>width</code> x
+     * <code>height</code>.
+     *
+     * @param scene Scene to paint
+     * @param width Width of the image
+     * @param height Height of the image
+     * @return The image, or null if the thread was interrupted while painting
+     */
+    public BufferedImage render(DoilyScene scene, int width, int height) {
+        BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        return render(scene, image) ? image : null;
+    }
+
+    /**
+     * Paints <code>scene</code> over all of <code>image</code>, so an image
+     * can be used again for the next scene.
+     *
+     * @param scene Scene to paint
+     * @param image Image to paint into
+     * @return false if the thread was interrupted while painting
+     */
+    public boolean render(DoilyScene scene, BufferedImage image) {
+        Graphics2D g2 = image.createGraphics();
+        boolean finished = paintScene(g2, scene, image.getWidth(), image.getHeight());
+        g2.dispose();
+        return finished;
+    }
+
+    /**
+     * Paints the background, the bars and the strokes of <code>scene</code>
+     * on <code>g2</code>, which has the size <code>width</code> x
+     * <code>height</code>.
+     *
+     * @param g2 Graphics object to paint on.
+     * @param scene Scene to paint
+     * @param width Width of g2
+     * @param height Height of g2
+     * @return false if the thread was interrupted while painting
+     */
+    public boolean paintScene(Graphics2D g2, DoilyScene scene, int width, int height) {
+        paintBackground(g2, scene.getBackground(), scene.getBars(), scene.getSectors(), width, height);
+        //Paints the points
+        StrokeStore strokes = scene.getStrokes();
+        return paintStrokes(g2, strokes, 0, strokes.getStrokeCount(), scene.getSectors(), scene.getReflect(), width, height);
+    }
+
+    /**
+     * Fills <code>g2</code>, which has the size <code>width</code> x
+     * <code>height</code>, with the colour <code>background</code> and paints
+     * the bars if <code>showBars</code> is true.
+     *
+     * @param g2 Graphics object to paint on.
+     * @param background Background colour in RGB
+     * @param showBars If the bars are shown
+     * @param sectors Number of sectors
+     * @param width Width of g2
+     * @param height Height of g2
+     */
+    public void paintBackground(Graphics2D g2, int background, boolean showBars, int sectors, int width, int height) {
+        g2.setPaint(new Color(background));
+        g2.fillRect(0, 0, width, height);
+        if (showBars) {
+            paintBars(g2, sectors, width, height);
+        }
+    }
+
+    /**
+     * Paints <code>sectors</code> bars from the centre of <code>g2</code>,
+     * which has the size <code>width</code> x <code>height</code>.
+     *
+     * @param g2 Graphics object to paint on.
+     * @param sectors Number of sectors
+     * @param width Width of g2
+     * @param height Height of g2
+     */
+    public void paintBars(Graphics2D g2, int sectors, int width, int height) {
+        symmetry.setNumberOfSectors(sectors);
+        double r = Math.min(width / 2, height / 2);
+        int centerX = width / 2, centerY = height / 2;
+        g2.setStroke(new BasicStroke(1.0f, BasicStroke.CAP_ROUND, BasicStroke.JOIN_ROUND));
+        g2.setColor(Color.GRAY);
+        g2.drawOval(centerX, centerY, 1, 1);
+        for (int i = 0; i < sectors; i++) {
+            double x = centerX + r * symmetry.getCos(i);
+            double y = centerY + r * symmetry.getSin(i);
+            g2.drawLine(centerX, centerY, (int) x, (int) y);
+        }
+    }
+
+    /**
+     * Paints the strokes from <code>startPosition</code> to
+     * <code>endPosition</code> of <code>strokes</code> on <code>g2</code>,
+     * which has the size <code>width</code> x <code>height</code>. The
+     * painting stops if the thread is interrupted.
+     *
+     * @param g2 Graphics object to paint on.
+     * @param strokes Strokes to paint
+     * @param startPosition Start printing from this stroke in the store.
+     * @param endPosition Till here.
+     * @param sectors Number of sectors
+     * @param reflect If we need to reflect
+     * @param width Width of g2
+     * @param height Height of g2
+     * @return false if the thread was interrupted while painting
+     */
+    public boolean paintStrokes(Graphics2D g2, StrokeStore strokes, int startPosition, int endPosition,
+            int sectors, boolean reflect, int width, int height) {
+        symmetry.setNumberOfSectors(sectors);
+        double scale = getScale(g2);
+        //For each stroke from startPositon step till endPosition
+        for (int i = startPosition; i < endPosition; i++) {
+            if (Thread.currentThread().isInterrupted()) {
+                symmetry.trim();
+                return false;
+            }
+            int numberOfPoints = strokes.getStrokePointCount(i);
+            if (numberOfPoints == 0) {
+                continue;
+            }
+            //We set the specific color and size of the line
+            int size = strokes.getSize(i);
+            g2.setColor(new Color(strokes.getColor(i), true));
+            g2.setStroke(new BasicStroke(size, BasicStroke.CAP_ROUND, BasicStroke.JOIN_ROUND));
+            //Then we scale and rotate the whole stroke at once, only with the detail that can be seen
+            transformStrokeAtScale(strokes, i, width, height, scale);
+            //And draw it with one path for every sector and reflection
+            strokeRenderer.drawStroke(g2, symmetry, size, reflect, height);
+        }
+        //A long stroke doesn't keep its buffers after painting
+        symmetry.trim();
+        return true;
+    }
+
+    /**
+     * Paints a line between the last 2 points of the stroke
+     * <code>step</code>, or an oval if it has just one point, on
+     * <code>g2</code>, which has the size <code>width</code> x
+     * <code>height</code>. This is used while a stroke is drawn, so only the
+     * new segment is painted. The tiles it touches are marked in
+     * <code>dirtyTiles</code>.
+     *
+     * @param g2 Graphics object to paint on.
+     * @param strokes Strokes store
+     * @param step Stroke that is being drawn
+     * @param sectors Number of sectors
+     * @param reflect If we need to reflect
+     * @param width Width of g2
+     * @param height Height of g2
+     * @param dirtyTiles Tiles that need to be repainted
+     */
+    public void paintLastSegment(Graphics2D g2, StrokeStore strokes, int step, int sectors, boolean reflect,
+            int width, int height, DirtyTiles dirtyTiles) {
+        //First we set the color and size of the line
+        int size = strokes.getSize(step);
+        g2.setColor(new Color(strokes.getColor(step), true));
+        g2.setStroke(new BasicStroke(size, BasicStroke.CAP_ROUND, BasicStroke.JOIN_ROUND));
+        int positionOfPoint = strokes.getStrokePointCount(step) - 1;
+        symmetry.setNumberOfSectors(sectors);
+
+        //If there is just one point in the array, we paint an oval
+        if (positionOfPoint == 0) {
+            //We scale and rotate the point for every sector
+            transformStroke(strokes, step, 0, 1, width, height);
+            double[] xs = symmetry.getXs(), ys = symmetry.getYs();
+            for (int k = 0; k < sectors; k++) {
+                g2.fillOval((int) (xs[k] - size / 2), (int) (ys[k] - size / 2), size, size);
+                dirtyTiles.markLine(xs[k], ys[k], xs[k], ys[k], size);
+                if (reflect) {
+                    g2.fillOval((int) (xs[k] - size / 2), (int) ((height - ys[k] - size / 2)), size, size);
+                    dirtyTiles.markLine(xs[k], height - ys[k], xs[k], height - ys[k], size);
+                }
+            }
+            //If there are at least 2 we paint a line
+        } else {
+            //We scale and rotate the last two points for every sector
+            transformStroke(strokes, step, positionOfPoint - 1, positionOfPoint + 1, width, height);
+            double[] xs = symmetry.getXs(), ys = symmetry.getYs();
+            for (int k = 0; k < sectors; k++) {
+                int previous = 2 * k, last = 2 * k + 1;
+                g2.drawLine((int) (xs[last]), (int) (ys[last]), (int) (xs[previous]), (int) (ys[previous]));
+                dirtyTiles.markLine(xs[last], ys[last], xs[previous], ys[previous], size);
+                if (reflect) {
+                    g2.drawLine((int) (xs[last]), (int) ((height - ys[last])),
+                            (int) (xs[previous]), (int) ((height - ys[previous])));
+                    dirtyTiles.markLine(xs[last], height - ys[last], xs[previous], height - ys[previous], size);
+                }
+            }
+        }
+    }
+
+    /**
+     * Scales the points from <code>from</code> to <code>to</code> of the step
+     * <code>step</code> to an image of <code>width</code> x
+     * <code>height</code> and rotates them for every sector. The results are
+     * left in the symmetry engine.
+     *
+     * @param strokes Strokes store
+     * @param step Step in the strokes store
+     * @param from First point of the step
+     * @param to Last point of the step (exclusive)
+     * @param width Width of the image
+     * @param height Height of the image
+     */
+    public void transformStroke(StrokeStore strokes, int step, int from, int to, int width, int height) {
+        int offset = strokes.getStrokeOffset(step);
+        transformPoints(strokes.getXs(), strokes.getYs(), offset + from, offset + to,
+                strokes.getWindowWidth(step), strokes.getWindowHeight(step), width, height,
+                0, symmetry.getNumberOfSectors());
+    }
+
+    /**
+     * Scales the whole step <code>step</code> to an image of
+     * <code>width</code> x <code>height</code> and rotates it for every
+     * sector, like
+     * {@link #transformStroke(StrokeStore, int, int, int, int, int)}. If the
+     * image is painted <code>scale</code> times its size and the stroke ends
+     * up at least twice smaller than it was drawn, the simplest level of the
+     * stroke that stays within half a pixel is used instead of all its
+     * points.
+     *
+     * @param strokes Strokes store
+     * @param step Step in the strokes store
+     * @param width Width of the image
+     * @param height Height of the image
+     * @param scale Scale of the Graphics2D the image is painted with
+     */
+    public void transformStrokeAtScale(StrokeStore strokes, int step, int width, int height, double scale) {
+        transformStrokeAtScale(strokes, step, width, height, scale, 0, symmetry.getNumberOfSectors());
+    }
+
+    /**
+     * Scales the whole step <code>step</code> like
+     * {@link #transformStrokeAtScale(StrokeStore, int, int, int, double)},
+     * but rotates it only for the sectors from <code>fromSector</code> to
+     * <code>toSector</code>.
+     *
+     * @param strokes Strokes store
+     * @param step Step in the strokes store
+     * @param width Width of the image
+     * @param height Height of the image
+     * @param scale Scale of the Graphics2D the image is painted with
+     * @param fromSector First sector
+     * @param toSector Last sector (exclusive)
+     */
+    public void transformStrokeAtScale(StrokeStore strokes, int step, int width, int height, double scale,
+            int fromSector, int toSector) {
+        int windowWidth = strokes.getWindowWidth(step), windowHeight = strokes.getWindowHeight(step);
+        int numberOfPoints = strokes.getStrokePointCount(step);
+        int level = StrokeLevels.levelFor(scale * Math.min(width, height) / Math.min(windowWidth, windowHeight));
+        if (level > 0 && numberOfPoints > 2) {
+            StrokeLevels levels = strokes.getLevels(step);
+            if (levels.getLevelCount() > 0) {
+                level = Math.min(level, levels.getLevelCount());
+                float[] xs = levels.getXs(level), ys = levels.getYs(level);
+                transformPoints(xs, ys, 0, xs.length, windowWidth, windowHeight, width, height,
+                        fromSector, toSector);
+                return;
+            }
+        }
+        int offset = strokes.getStrokeOffset(step);
+        transformPoints(strokes.getXs(), strokes.getYs(), offset, offset + numberOfPoints, windowWidth, windowHeight,
+                width, height, fromSector, toSector);
+    }
+
+    /**
+     * Scales the points from <code>from</code> to <code>to</code>, drawn in a
+     * window of <code>windowWidth</code> x <code>windowHeight</code>, to an
+     * image of <code>width</code> x <code>height</code> and rotates them for
+     * the sectors from <code>fromSector</code> to <code>toSector</code>.
+     *
+     * @param xs X coordinates
+     * @param ys Y coordinates
+     * @param from First point
+     * @param to Last point (exclusive)
+     * @param windowWidth Width of the window the points were drawn in
+     * @param windowHeight Height of the window the points were drawn in
+     * @param width Width of the image
+     * @param height Height of the image
+     * @param fromSector First sector
+     * @param toSector Last sector (exclusive)
+     */
+    private void transformPoints(float[] xs, float[] ys, int from, int to, int windowWidth, int windowHeight,
+            int width, int height, int fromSector, int toSector) {
+        /**
+         * To make the image maintain it's proportions we need to first shift
+         * the point into an square coordinates, scale it and then add the
+         * remaining difference.
+         */
+        double oldRadius = Math.min(windowWidth, windowHeight);
+        int radius = Math.min(width, height);
+        symmetry.transform(xs, ys, from, to,
+                (windowWidth - oldRadius) / 2d, (windowHeight - oldRadius) / 2d, radius / oldRadius,
+                (width - (double) radius) / 2d, (height - (double) radius) / 2d,
+                width / 2, height / 2, fromSector, toSector);
+    }
+
+    /**
+     * Returns how many times bigger than its own pixels <code>g2</code>
+     * paints, for example less than 1 for a thumbnail painted through a
+     * scaled Graphics2D.
+     *
+     * @param g2 Graphics object
+     * @return The scale
+     */
+    public static double getScale(Graphics2D g2) {
+        AffineTransform transform = g2.getTransform();
+        return Math.sqrt(Math.abs(transform.getDeterminant()));
+    }
+
+    /**
+     * Returns the symmetry engine with the last transformed stroke.
+     *
+     * @return SymmetryEngine of the renderer
+     */
+    public SymmetryEngine getSymmetry() {
+        return symmetry;
+    }
+}
@@ -0,0 +1,133 @@
+
+/**
+ * This class is a copy of everything needed to paint a doily: the strokes
+ * from the current start to the current step and the settings they are
+ * painted with. It is never changed after it is created, so it can be painted
+ * on another thread while the user keeps drawing.
+ *
+ * @author Alexandru Amarandei Stanescu aas1u16
+ */
+public class DoilyScene {
+
+    //Copy of the strokes, the first one is the current start
+    private final StrokeStore strokes;
+    //Steps of the history the strokes were copied from
+    private final int start, step;
+    private final int sectors, background;
+    private final boolean reflect, showBars;
+    //Version of the history when the scene was created
+    private final long version;
+
+    /**
+     * Creates a scene with a copy of the strokes from <code>start</code> to
+     * <code>step</code> of <code>history</code> and the given settings.
+     *
+     * @param history History to copy from
+     * @param sectors Number of sectors
+     * @param reflect If we need to reflect
+     * @param showBars If the bars are shown
+     * @param background Background colour in RGB
+     */
+    public DoilyScene(DrawingHistory history, int sectors, boolean reflect, boolean showBars, int background) {
+        this(history.getStrokes().copy(history.getCurrentStart(), history.getCurrentStep()),
+                history.getCurrentStart(), history.getCurrentStep(), sectors, reflect, showBars, background,
+                history.getVersion());
+    }
+
+    /**
+     * Creates a scene from the strokes <code>strokes</code>, which will not be
+     * copied and must not be changed after this.
+     *
+     * @param strokes Strokes of the scene
+     * @param start Step in the history of the first stroke
+     * @param step Step in the history after the last stroke
+     * @param sectors Number of sectors
+     * @param reflect If we need to reflect
+     * @param showBars If the bars are shown
+     * @param background Background colour in RGB
+     * @param version Version of the history
+     */
+    public DoilyScene(StrokeStore strokes, int start, int step, int sectors, boolean reflect, boolean showBars,
+            int background, long version) {
+        this.strokes = strokes;
+        this.start = start;
+        this.step = step;
+        this.sectors = sectors;
+        this.reflect = reflect;
+        this.showBars = showBars;
+        this.background = background;
+        this.version = version;
+    }
+
+    /**
+     * Returns the strokes of the scene. They must not be changed.
+     *
+     * @return StrokeStore of the scene.
+     */
+    public StrokeStore getStrokes() {
+        return strokes;
+    }
+
+    /**
+     * Returns the step in the history of the first stroke.
+     *
+     * @return start
+     */
+    public int getStart() {
+        return start;
+    }
+
+    /**
+     * Returns the step in the history after the last stroke.
+     *
+     * @return step
+     */
+    public int getStep() {
+        return step;
+    }
+
+    /**
+     * Returns the number of sectors.
+     *
+     * @return sectors
+     */
+    public int getSectors() {
+        return sectors;
+    }
+
+    /**
+     * Returns if we need to reflect.
+     *
+     * @return true if yes, false if no
+     */
+    public boolean getReflect() {
+        return reflect;
+    }
+
+    /**
+     * Returns if the bars are shown or not.
+     *
+     * @return true if yes, false if no
+     */
+    public boolean getBars() {
+        return showBars;
+    }
+
+    /**
+     * Returns the background colour in RGB.
+     *
+     * @return background colour in RGB
+     */
+    public int getBackground() {
+        return background;
+    }
+
+    /**
+     * Returns the version of the history the scene was copied from.
+     *
+     * @return version
+     */
+    public long getVersion() {
+        return version;
+    }
+}
@@ -0,0 +1,211 @@
+
+import java.util.ArrayList;
+
+/**
+ * This class holds the history of a drawing. The strokes are never deleted
+ * when they are undone, they are kept in a StrokeStore and a cursor says how
+ * many of them are shown. A clear is kept as a marker with the step at which
+ * it was made, so the current start is the step of the last clear before the
+ * cursor. Undo and redo just move the cursor over the next stroke or clear.
+ * Only a new stroke or clear made after an undo removes the strokes and
+ * clears that could have been redone.
+ *
+ * @author Alexandru Amarandei Stanescu aas1u16
+ */
+public class DrawingHistory {
+
+    //Every stroke ever drawn that was not replaced
+    private final StrokeStore strokes;
+    //Step at which every clear was made, in order
+    private final ArrayList<Integer> clears = new ArrayList<>();
+    //Number of strokes and clears that are done (not undone)
+    private int currentStep = 0, doneClears = 0;
+    //Changes every time the history is changed
+    private long version = 0;
+
+    /**
+     * Creates an empty history.
+     */
+    public DrawingHistory() {
+        strokes = new StrokeStore();
+    }
+
+    /**
+     * Creates a history from the old save fields: the strokes
+     * <code>strokes</code>, the current step <code>step</code>, the current
+     * start <code>start</code> and the list of previous starts
+     * <code>starts</code>. Every previous start (except the first one) and the
+     * current start are the steps at which a clear was made.
+     *
+     * @param strokes Strokes of the drawing
+     * @param step Current step
+     * @param start Current start
+     * @param starts Previous starts
+     */
+    public DrawingHistory(StrokeStore strokes, int step, int start, ArrayList<Integer> starts) {
+        this.strokes = strokes;
+        currentStep = Math.max(0, Math.min(step, strokes.getStrokeCount()));
+        if (!starts.isEmpty() || start > 0) {
+            for (int i = 1; i < starts.size(); i++) {
+                clears.add(Math.min(starts.get(i), currentStep));
+            }
+            clears.add(Math.min(start, currentStep));
+        }
+        doneClears = clears.size();
+    }
+
+    /**
+     * Starts a new stroke after the current step. The strokes and clears that
+     * were undone are removed.
+     *
+     * @param rgb Colour of the stroke
+     * @param size Line size of the stroke
+     * @param windowWidth Width of the window when the stroke was drawn
+     * @param windowHeight Height of the window when the stroke was drawn
+     */
+    public void addStroke(int rgb, int size, int windowWidth, int windowHeight) {
+        removeUndone();
+        currentStep = strokes.addStroke(rgb, size, windowWidth, windowHeight) + 1;
+        version++;
+    }
+
+    /**
+     * Adds the point (<code>x</code>, <code>y</code>) to the last stroke.
+     *
+     * @param x X coordinate
+     * @param y Y coordinate
+     */
+    public void addPoint(float x, float y) {
+        strokes.addPoint(x, y);
+        version++;
+    }
+
+    /**
+     * Moves the last point of the last stroke to (<code>x</code>,
+     * <code>y</code>).
+     *
+     * @param x X coordinate
+     * @param y Y coordinate
+     */
+    public void moveLastPoint(float x, float y) {
+        strokes.moveLastPoint(x, y);
+        version++;
+    }
+
+    /**
+     * Clears the drawing by adding a clear marker at the current step. The
+     * strokes and clears that were undone are removed.
+     */
+    public void clear() {
+        removeUndone();
+        clears.add(currentStep);
+        doneClears++;
+        version++;
+    }
+
+    /**
+     * Undoes the last stroke or clear.
+     *
+     * @return true if a clear was undone, false if a stroke (or nothing) was
+     */
+    public boolean undo() {
+        version++;
+        //If the last thing done is a clear at the current step, we undo it
+        if (doneClears > 0 && clears.get(doneClears - 1) == currentStep) {
+            doneClears--;
+            return true;
+        }
+        if (currentStep > 0) {
+            currentStep--;
+        }
+        return false;
+    }
+
+    /**
+     * Redoes the last stroke or clear that was undone.
+     *
+     * @return true if a clear was redone, false if a stroke (or nothing) was
+     */
+    public boolean redo() {
+        version++;
+        //Clears at the current step come before the next stroke
+        if (doneClears < clears.size() && clears.get(doneClears) == currentStep) {
+            doneClears++;
+            return true;
+        }
+        if (currentStep < strokes.getStrokeCount()) {
+            currentStep++;
+        }
+        return false;
+    }
+
+    /**
+     * Checks if there is anything to redo.
+     *
+     * @return true if yes, false if no
+     */
+    public boolean canRedo() {
+        return doneClears < clears.size() || currentStep < strokes.getStrokeCount();
+    }
+
+    /**
+     * Returns the version of the history, which changes with every stroke,
+     * point, clear, undo and redo.
+     *
+     * @return version
+     */
+    public long getVersion() {
+        return version;
+    }
+
+    /**
+     * Returns the store with all the strokes, including the undone ones.
+     *
+     * @return StrokeStore of the history.
+     */
+    public StrokeStore getStrokes() {
+        return strokes;
+    }
+
+    /**
+     * Returns the current step, the number of strokes that are done.
+     *
+     * @return currentStep
+     */
+    public int getCurrentStep() {
+        return currentStep;
+    }
+
+    /**
+     * Returns the current start, the step of the last clear that is done.
+     *
+     * @return currentStart
+     */
+    public int getCurrentStart() {
+        return doneClears == 0 ? 0 : clears.get(doneClears - 1);
+    }
+
+    /**
+     * Returns the starts before every clear that is done, like the old
+     * currentStarts array.
+     *
+     * @return ArrayList of Integers.
+     */
+    public ArrayList<Integer> getCurrentStarts() {
+        ArrayList<Integer> starts = new ArrayList<>();
+        for (int i = 0; i < doneClears; i++) {
+            starts.add(i == 0 ? 0 : clears.get(i - 1));
+        }
+        return starts;
+    }
+
+    /**
+     * Removes the strokes and clears after the cursor.
+     */
+    private void removeUndone() {
+        strokes.truncate(currentStep);
+        while (clears.size() > doneClears) {
+            clears.remove(clears.size() - 1);
+        }
+    }
+}
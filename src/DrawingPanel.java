@@ -1,56 +1,96 @@
 
-import java.awt.BasicStroke;
 import java.awt.Color;
 import java.awt.Dimension;
+import java.awt.Font;
 import java.awt.Graphics;
 import java.awt.Graphics2D;
+import java.awt.Rectangle;
+import java.awt.RenderingHints;
+import java.awt.event.ActionEvent;
+import java.awt.event.ComponentAdapter;
+import java.awt.event.ComponentEvent;
 import java.awt.event.MouseEvent;
 import java.awt.event.MouseListener;
 import java.awt.event.MouseMotionListener;
-import java.awt.geom.Point2D;
 import java.awt.image.BufferedImage;
 import java.util.ArrayList;
 import javax.swing.JPanel;
+import javax.swing.Timer;
 
 /**
  * This class represents the main drawing panel. It listens to mouse movement
- * and stores the mouse points to a local arrayList. This array is drawn into an
- * offscreen bufferedImage with lines for each two consecutive points. The
- * current drawing is made on top of the offscreen buffereImage.
+ * and stores the mouse points in a StrokeStore, leaving out the ones that
+ * would move the stroke by less than half a pixel. The strokes are drawn into
+ * an offscreen bufferedImage with lines for each two consecutive points. The
+ * current drawing is made on top of the offscreen buffereImage. All the
+ * painting is done by a DoilyRenderer, the panel only gives it its size and
+ * settings.
  *
  * @author Alexandru Amarandei Stanescu aas1u16
  */
 public class DrawingPanel extends JPanel implements MouseMotionListener, MouseListener {
 
-    //Main array where the points from the mouse are store
-    //Every array in the array represents a step
-    private ArrayList<ArrayList<Point2D>> pointsArrays = new ArrayList<>();
-    //Array of colors by step
-    private ArrayList<Color> colors = new ArrayList<>();
-    //Array of line sizes by step
-    private ArrayList<Integer> sizes = new ArrayList<>();
-    //Array of currentStarts by step
-    private ArrayList<Integer> currentStarts = new ArrayList<>();
-    //Array of window sizes by step
-    private ArrayList<Point2D> windowSizes = new ArrayList<>();
+    //History with the store where the points from the mouse are stored
+    //Every stroke in the store represents a step, with its colour, line size and window size
+    private DrawingHistory history = new DrawingHistory();
     //First colors
     private Color currentColor = Color.BLUE, backgroundColor = Color.BLACK;
     //currentSize of line
     private int currentSize = 4;
     //Current number of sectors
     private int numberOfSectors = 11;
+    //Scales, rotates and draws the strokes for the current size of the panel
+    private final DoilyRenderer renderer = new DoilyRenderer();
+    //Paints the whole image again on a background thread after a resize, load or change of settings
+    private final RenderService renderService = new RenderService();
+    //Waits for the window to stop changing size before the image is painted again
+    private final Timer resizeTimer;
+    private static final int RESIZE_DELAY = 100;
     private boolean clicked = false, mouseInPanel = false, showBars = true, reflect = true;
-    private boolean drawForResize = false, wasResized = false;
-    private int currentStep, currentStart = 0;
     //OffScreen image
     private BufferedImage offScreenImage = null;
-
-    /**
-     * Simple constructor that adds the listener to the panel
+    //Settings and steps the offScreen image was last painted with
+    private int paintedSectors, paintedWidth, paintedHeight, paintedStart, paintedStep = -1;
+    private boolean paintedReflect, paintedBars;
+    private Color paintedBackground;
+    //Compressed checkpoints of the offScreen image, so it can be painted again from the nearest one
+    private final SnapshotCache snapshots = new SnapshotCache(CHECKPOINT_INTERVAL, SNAPSHOT_MEMORY);
+    //Steps between checkpoints and memory they can use
+    private static final int CHECKPOINT_INTERVAL = 16;
+    private static final long SNAPSHOT_MEMORY = 64L * 1024 * 1024;
+    //Tiles of the offScreen image changed since the panel was last repainted
+    private final DirtyTiles dirtyTiles = new DirtyTiles(64);
+    //Timings of the mouse events, frames and redraws, shown through JMX and the timings overlay
+    private final PanelMetrics metrics = new PanelMetrics();
+    //Drops the mouse points that don't change the stroke by more than the tolerance
+    private final StrokeSimplifier simplifier = new StrokeSimplifier(SIMPLIFY_TOLERANCE);
+    private static final float SIMPLIFY_TOLERANCE = 0.5f;
+    private boolean showTimings = false;
+    //Where the timings overlay is painted
+    private static final Rectangle TIMINGS_BOUNDS = new Rectangle(8, 8, 330, 100);
+
+    /**
+     * Simple constructor that adds the listeners to the panel. When the panel
+     * is resized, the image is painted again in the background once no resize
+     * came for <code>RESIZE_DELAY</code> milliseconds, so dragging the border
+     * of the window doesn't copy the drawing for every new size.
      */
     public DrawingPanel() {
         addMouseListener(this);
         addMouseMotionListener(this);
+        resizeTimer = new Timer(RESIZE_DELAY, (ActionEvent e) -> {
+            //A stroke may have painted the image for the new size already
+            if (!isOffScreenImageCurrent(history.getCurrentStep())) {
+                recreateInBackground();
+            }
+        });
+        resizeTimer.setRepeats(false);
+        addComponentListener(new ComponentAdapter() {
+            @Override
+            public void componentResized(ComponentEvent e) {
+                resizeTimer.restart();
+            }
+        });
         setBackground(Color.BLACK);
         setMinimumSize(new Dimension(200, 200));
     }
@@ -62,46 +102,43 @@ public class DrawingPanel extends JPanel implements MouseMotionListener, MouseLi
     public void createBufferedImage() {
         if (getWidth() > 0 && getHeight() > 0) {
             offScreenImage = new BufferedImage(getWidth(), getHeight(), BufferedImage.TYPE_INT_RGB);
+            metrics.imageAllocated();
             paintBars(offScreenImage.createGraphics());
         }
     }
 
     /**
      * This function decrements the current step by 1 so the last points will
-     * not be printed. It also takes into account the clear commands.
+     * not be printed. It also takes into account the clear commands. The
+     * points are kept in the history so they can be redone.
      */
     public void undoCommand() {
-        currentStep--;
-        if (currentStep < 0) {
-            currentStep = 0;
-        }
-        boolean erase = true;
-        //If we enoucnter a clear command
-        if (currentStep < currentStart) {
-            // we change the position of the starting step from which the points are drawn to the previous one
-            currentStart = currentStarts.get(currentStarts.size() - 1);
-            currentStarts.remove(currentStarts.size() - 1);
-            erase = false;
-            currentStep++;
+        history.undo();
+    }
+
+    /**
+     * Redoes the last undone step or clear and paints the offScreen image. A
+     * redone step is just added on top of the image, a redone clear paints the
+     * image again.
+     */
+    public void redoCommand() {
+        if (!history.canRedo()) {
+            return;
         }
-        //If we didn't clear we must remove the unwanted info from the arrays
-        if (erase) {
-            pointsArrays.get(currentStep).clear();
-            colors.remove(currentStep);
-            sizes.remove(currentStep);
-            windowSizes.remove(currentStep);
+        if (history.redo()) {
+            paintBufferedImage();
+        } else {
+            commitLastStroke();
         }
-
     }
 
     /**
      * Clears the current image by setting the starting point as the current
-     * step. Also, it save the last current start in the array.
+     * step. The clear is saved in the history so it can be undone.
      */
     public void clearCommand() {
-        currentStarts.add(currentStart);
-        currentStart = currentStep;
-
+        history.clear();
+        snapshots.removeAfter(history.getCurrentStep());
     }
 
     /**
@@ -113,301 +150,342 @@ public class DrawingPanel extends JPanel implements MouseMotionListener, MouseLi
     }
 
     /**
-     * Paint a new buffered image from all the point in the arrays.
+     * Paint the buffered image again from all the point in the arrays. If
+     * there is a checkpoint of the image, we start from the nearest one and
+     * paint only the steps after it. An image that is being painted in the
+     * background is cancelled.
      */
     public void paintBufferedImage() {
-        offScreenImage = new BufferedImage(getWidth(), getHeight(), BufferedImage.TYPE_INT_RGB);
+        long start = System.nanoTime();
+        renderService.cancel();
+        if (offScreenImage == null || offScreenImage.getWidth() != getWidth() || offScreenImage.getHeight() != getHeight()) {
+            offScreenImage = new BufferedImage(getWidth(), getHeight(), BufferedImage.TYPE_INT_RGB);
+            metrics.imageAllocated();
+        }
         Graphics2D g2 = offScreenImage.createGraphics();
-        //Paint current background
-        g2.setPaint(backgroundColor);
-        g2.fillRect(0, 0, offScreenImage.getWidth(), offScreenImage.getHeight());
-        //Paints the bars
-        paintBars(g2);
-        //Paints the points
-        paintPointsOnImage(g2, currentStart, currentStep);
+        int currentStart = history.getCurrentStart(), currentStep = history.getCurrentStep();
+        //Checkpoints are valid only for the current settings
+        snapshots.setSettings(numberOfSectors + " " + reflect + " " + showBars + " "
+                + backgroundColor.getRGB() + " " + getWidth() + " " + getHeight());
+        int step = snapshots.restoreNearest(currentStart, currentStep, offScreenImage);
+        if (step < 0) {
+            step = currentStart;
+            //Paint current background and the bars
+            renderer.paintBackground(g2, backgroundColor.getRGB(), showBars, numberOfSectors,
+                    offScreenImage.getWidth(), offScreenImage.getHeight());
+        }
+        //Paints the points, saving checkpoints on the way
+        while (step < currentStep) {
+            int next = Math.min(currentStep, step - step % CHECKPOINT_INTERVAL + CHECKPOINT_INTERVAL);
+            paintPointsOnImage(g2, step, next);
+            step = next;
+            saveCheckpoint(step);
+        }
+        g2.dispose();
+        //Remember what the image contains
+        setPaintedState(numberOfSectors, reflect, showBars, backgroundColor, currentStart, currentStep);
+        metrics.recordFullRedraw(System.nanoTime() - start);
     }
 
     /**
-     * Adds the last points to the image by drawing drawing a line between the
-     * current point and the previous one.
+     * Starts painting the whole image again on a background thread. Until it
+     * is finished, the panel shows the current image (scaled if the size of
+     * the panel changed). The new image replaces the current one only if
+     * nothing changed while it was painted.
      */
-    public void addLastPointsToImage() {
-        Point2D center = new Point2D.Double(getWidth() / 2, getHeight() / 2);
-        paintLastPoints(currentStep - 1, center);
-
+    public void recreateInBackground() {
+        if (getWidth() <= 0 || getHeight() <= 0) {
+            return;
+        }
+        DoilyScene scene = new DoilyScene(history, numberOfSectors, reflect, showBars, backgroundColor.getRGB());
+        int width = getWidth(), height = getHeight();
+        long requested = System.nanoTime();
+        renderService.render(scene, width, height, (BufferedImage image) -> {
+            metrics.recordBackgroundRedraw(System.nanoTime() - requested);
+            metrics.imageAllocated();
+            //If the drawing, the settings or the size changed in the meantime, the image is too old
+            if (scene.getVersion() != history.getVersion() || scene.getSectors() != numberOfSectors
+                    || scene.getReflect() != reflect || scene.getBars() != showBars
+                    || scene.getBackground() != backgroundColor.getRGB()
+                    || width != getWidth() || height != getHeight()) {
+                if (!clicked && !isOffScreenImageCurrent(history.getCurrentStep())) {
+                    recreateInBackground();
+                }
+                return;
+            }
+            offScreenImage = image;
+            setPaintedState(numberOfSectors, reflect, showBars, backgroundColor, scene.getStart(), scene.getStep());
+            repaint();
+        });
     }
 
     /**
-     * Paints the bars on <code>g2</code>.
+     * Remembers the settings and the steps the offScreen image was painted
+     * with. The size is taken from the image.
      *
-     * @param g2 Graphics2D object to paint to.
+     * @param sectors Number of sectors
+     * @param reflect If it was reflected
+     * @param bars If the bars were shown
+     * @param background Background colour
+     * @param start First step in the image
+     * @param step Last step in the image (exclusive)
      */
-    public void paintBars(Graphics2D g2) {
-        int r = Math.min(getWidth() / 2, getHeight() / 2);
-        Point2D center = new Point2D.Double(getWidth() / 2, getHeight() / 2);
-        paintBars(g2, center, r);
+    private void setPaintedState(int sectors, boolean reflect, boolean bars, Color background, int start, int step) {
+        paintedSectors = sectors;
+        paintedReflect = reflect;
+        paintedBars = bars;
+        paintedBackground = background;
+        paintedWidth = offScreenImage.getWidth();
+        paintedHeight = offScreenImage.getHeight();
+        paintedStart = start;
+        paintedStep = step;
     }
 
     /**
-     * Paints the bars on <code>g2</code> with the center point
-     * <code>center</code> at a distance of <code>r</code>.
+     * Paints the current drawing into a new image of the size of the panel,
+     * for saving it. The image is painted from the strokes, not copied from
+     * the screen, so it has neither the timings overlay nor an offScreen
+     * image that is still being painted in the background, and it is not
+     * counted in the timings.
      *
-     * @param g2 Graphics2D object to paint to.
-     * @param center Centre of g2.
-     * @param r Distance to paint from centre.
+     * @return The image
      */
-    public void paintBars(Graphics2D g2, Point2D center, double r) {
-        //First we check if we need to paint the bars
-        if (showBars) {
-            //Then we paint the bars
-            g2.setStroke(new BasicStroke(1.0f, BasicStroke.CAP_ROUND, BasicStroke.JOIN_ROUND));
-            g2.setColor(Color.GRAY);
-            g2.drawOval(getWidth() / 2, getHeight() / 2, 1, 1);
-            for (int i = 0; i < numberOfSectors; i++) {
-                double x = center.getX() + r * Math.cos(2 * Math.PI * i / numberOfSectors);
-                double y = center.getY() + r * Math.sin(2 * Math.PI * i / numberOfSectors);
-                g2.drawLine((int) center.getX(), (int) center.getY(), (int) x, (int) y);
-            }
+    public BufferedImage renderDrawing() {
+        DoilyScene scene = new DoilyScene(history, numberOfSectors, reflect, showBars, backgroundColor.getRGB());
+        return renderer.render(scene, getWidth(), getHeight());
+    }
+
+    /**
+     * Adds the last step to the offScreen image without repainting the other
+     * steps. While dragging, the step was already drawn segment by segment, so
+     * we just draw it again on top as one path. If the settings or the size of
+     * the panel changed since the image was painted, the image is recreated
+     * instead.
+     */
+    public void commitLastStroke() {
+        if (!canCommitLastStroke()) {
+            paintBufferedImage();
+            return;
         }
+        int currentStep = history.getCurrentStep();
+        Graphics2D g2 = offScreenImage.createGraphics();
+        paintPointsOnImage(g2, currentStep - 1, currentStep);
+        g2.dispose();
+        paintedStep = currentStep;
+        saveCheckpoint(currentStep);
     }
 
     /**
-     * Paints a line between the last 2 points or an oval if there is just one
-     * point in the current step,
+     * Saves a checkpoint of the offScreen image if it contains the steps up to
+     * <code>step</code> and <code>step</code> is a checkpoint step.
      *
-     * @param step Current step
-     * @param center Centre of Image
+     * @param step Last step in the image (exclusive)
      */
-    public void paintLastPoints(int step, Point2D center) {
-        //First we get the graphics object
-        Graphics2D g2 = offScreenImage.createGraphics();
-        //Then set the color and size of the line
-        g2.setColor(colors.get(step));
-        g2.setStroke(new BasicStroke(sizes.get(step), BasicStroke.CAP_ROUND, BasicStroke.JOIN_ROUND));
-        //Then we calculate the new proportions for the point
-        int positionOfPoint = pointsArrays.get(step).size() - 1;
-        double oldRadius = Math.min(windowSizes.get(step).getX(), windowSizes.get(step).getY());
-        int radius = Math.min(getWidth(), getHeight());
-        double newRatio = radius / oldRadius;
-        //Then we get the new coordonates of the point that are proportionate to the new window size
-        Point2D point = getPointCoordonates(step, positionOfPoint, newRatio);
-
-        //If there is just one point in the array, we paint an oval
-        if (positionOfPoint == 0) {
-            for (int k = 0; k < numberOfSectors; k++) {
-                double angle = 2 * Math.PI * k / numberOfSectors;
-                Point2D rotatedPoint = getPointRotated(center, point, angle);
-                Integer tempSize = sizes.get(step);
-                g2.fillOval((int) (rotatedPoint.getX() - tempSize / 2), (int) (rotatedPoint.getY() - tempSize / 2), tempSize, tempSize);
-                if (reflect) {
-                    g2.fillOval((int) (rotatedPoint.getX() - tempSize / 2), (int) ((getHeight() - rotatedPoint.getY() - tempSize / 2)), tempSize, tempSize);
-                }
-            }
-            //If there are at least 2 we paint a line
-        } else {
-            Point2D point2;
-            point2 = getPointCoordonates(step, positionOfPoint - 1, newRatio);
+    private void saveCheckpoint(int step) {
+        int currentStart = history.getCurrentStart();
+        if (step % CHECKPOINT_INTERVAL == 0 && step > currentStart && !snapshots.contains(currentStart, step)) {
+            snapshots.put(currentStart, step, offScreenImage);
+        }
+    }
 
-            for (int k = 0; k < numberOfSectors; k++) {
-                double angle = 2 * Math.PI * k / numberOfSectors;
-                Point2D rotatedPoint = getPointRotated(center, point, angle);
-                Point2D rotatedPoint2 = getPointRotated(center, point2, angle);
+    /**
+     * Checks if the offScreen image contains every step except the last one,
+     * painted with the current settings and size.
+     *
+     * @return true if the last step can be added, false if the image must be
+     * recreated
+     */
+    private boolean canCommitLastStroke() {
+        return isOffScreenImageCurrent(history.getCurrentStep() - 1);
+    }
 
-                g2.drawLine((int) (rotatedPoint.getX()), (int) (rotatedPoint.getY()),
-                        (int) (rotatedPoint2.getX()), (int) (rotatedPoint2.getY()));
-                if (reflect) {
-                    g2.drawLine((int) (rotatedPoint.getX()), (int) ((getHeight() - rotatedPoint.getY())),
-                            (int) (rotatedPoint2.getX()), (int) ((getHeight() - rotatedPoint2.getY())));
+    /**
+     * Checks if the offScreen image contains the steps from the current start
+     * to <code>step</code>, painted with the current settings and size.
+     *
+     * @param step Last step (exclusive)
+     * @return true if yes, false if no
+     */
+    private boolean isOffScreenImageCurrent(int step) {
+        return offScreenImage != null
+                && paintedSectors == numberOfSectors
+                && paintedReflect == reflect
+                && paintedBars == showBars
+                && backgroundColor.equals(paintedBackground)
+                && paintedWidth == getWidth()
+                && paintedHeight == getHeight()
+                && paintedStart == history.getCurrentStart()
+                && paintedStep == step;
+    }
 
-                }
+    /**
+     * Adds the last points to the image by drawing drawing a line between the
+     * current point and the previous one. The tiles it touches are marked as
+     * dirty.
+     */
+    public void addLastPointsToImage() {
+        Graphics2D g2 = offScreenImage.createGraphics();
+        dirtyTiles.resize(offScreenImage.getWidth(), offScreenImage.getHeight());
+        renderer.paintLastSegment(g2, history.getStrokes(), history.getCurrentStep() - 1, numberOfSectors, reflect,
+                getWidth(), getHeight(), dirtyTiles);
+        g2.dispose();
+    }
 
-            }
+    /**
+     * Paints the bars on <code>g2</code>.
+     *
+     * @param g2 Graphics2D object to paint to.
+     */
+    public void paintBars(Graphics2D g2) {
+        //First we check if we need to paint the bars
+        if (showBars) {
+            renderer.paintBars(g2, numberOfSectors, getWidth(), getHeight());
         }
     }
 
     /**
-     * Paints all the points from the pointsArrays into the <code>g2</code> from
-     * the <code>startPosition</code> array to the <code>endPosition</code>
-     * array.
+     * Paints all the points from the strokes store into the <code>g2</code>
+     * from the <code>startPosition</code> stroke to the
+     * <code>endPosition</code> stroke.
      *
      * @param g2 Graphics object to paint on.
-     * @param startPosition Start printing from this array in the pointsArray.
+     * @param startPosition Start printing from this stroke in the store.
      * @param endPosition Till here.
      */
     public void paintPointsOnImage(Graphics2D g2, int startPosition, int endPosition) {
-        //First, we use 2 arrays to store previous calculated points (reduces computation time by half).
-
-        ArrayList<Point2D> previousPoints;
-        ArrayList<Point2D> previousPointsTemp;
-        //Then we get the center and the radius of the current g2
-        Point2D center = new Point2D.Double(getWidth() / 2, getHeight() / 2);
-        int radius = Math.min(getWidth(), getHeight());
-        //Then, for each array from startPositon step till endPosition
-        for (int i = startPosition; i < endPosition; i++) {
-            //We set the specific color and size of the line
-            g2.setColor(colors.get(i));
-            g2.setStroke(new BasicStroke(sizes.get(i), BasicStroke.CAP_ROUND, BasicStroke.JOIN_ROUND));
-            //Then compute the radio between the old and new window sizes
-            double oldRadius = Math.min(windowSizes.get(i).getX(), windowSizes.get(i).getY());
-            double newRatio = radius / oldRadius;
-
-            //If we find one point the we print an oval
-            if (pointsArrays.get(i).size() == 1) {
-                //Get the new coordonates of the point
-                Point2D point;
-                point = getPointCoordonates(i, 0, newRatio);
-                //Rotate it 
-                for (int k = 0; k < numberOfSectors; k++) {
-                    double angle = 2 * Math.PI * k / numberOfSectors;
-                    Point2D rotatedPoint = getPointRotated(center, point, angle);
-                    //At every rotation we draw an oval around it
-                    g2.fillOval((int) (rotatedPoint.getX() - sizes.get(i) / 2), (int) (rotatedPoint.getY() - sizes.get(i) / 2), sizes.get(i), sizes.get(i));
-                    //If we need to reflect we print an oval to it's reflection
-                    if (reflect) {
-                        g2.fillOval((int) (rotatedPoint.getX() - sizes.get(i) / 2), (int) ((getHeight() - rotatedPoint.getY() - sizes.get(i) / 2)), sizes.get(i), sizes.get(i));
-                    }
-
-                }
-
-            }
-            //Reintialize the array
-            previousPoints = new ArrayList<>();
-            Point2D point, point2;
-            point = getPointCoordonates(i, 0, newRatio);
-            //Save the first points into an the array
-            for (int k = 0; k < numberOfSectors; k++) {
-                double angle = 2 * Math.PI * k / numberOfSectors;
-                Point2D rotatedPoint = getPointRotated(center, point, angle);
-                previousPoints.add(rotatedPoint);
-            }
-            //Start drawing lines between pairs of consecutive points
-            for (int j = 0; j < pointsArrays.get(i).size() - 1; j++) {
-                //Reinitialize temporary array
-                previousPointsTemp = new ArrayList<>();
-                //Get the coordonates of the new point
-                point2 = getPointCoordonates(i, j + 1, newRatio);
-
-                for (int k = 0; k < numberOfSectors; k++) {
-                    double angle = 2 * Math.PI * k / numberOfSectors;
-                    //Get point from provious rotation
-                    Point2D rotatedPoint = previousPoints.get(k);
-                    //Rotate second point
-                    Point2D rotatedPoint2 = getPointRotated(center, point2, angle);
-                    //Draw line
-                    g2.drawLine((int) (rotatedPoint.getX()), (int) (rotatedPoint.getY()),
-                            (int) (rotatedPoint2.getX()), (int) (rotatedPoint2.getY()));
-                    //If we need to reflect, draw the line between the reflected points
-                    if (reflect) {
-                        g2.drawLine((int) (rotatedPoint.getX()), (int) ((getHeight() - rotatedPoint.getY())),
-                                (int) (rotatedPoint2.getX()), (int) ((getHeight() - rotatedPoint2.getY())));
-
-                    }
-                    //Then add the rotated point to the array
-                    previousPointsTemp.add(rotatedPoint2);
-
-                }
-                //Then we change the temporary array to the new one
-                previousPoints = previousPointsTemp;
-            }
-        }
+        renderer.paintStrokes(g2, history.getStrokes(), startPosition, endPosition, numberOfSectors, reflect,
+                getWidth(), getHeight());
     }
 
     /**
-     * Paints the offScreen bufferedImage if there is no resizing taking place.
-     * If something is being resized, we paint the points directly into
-     * <code>g</code>
+     * Paints the offScreen bufferedImage. If the panel was resized and the new
+     * image is still painted in the background, we paint the old image scaled
+     * to the new size.
      *
      * @param g Where to draw
      */
     @Override
     public void paintComponent(Graphics g) {
+        long start = System.nanoTime();
         super.paintComponent(g);
 
         Graphics2D g2 = (Graphics2D) g;
 
-        if (drawForResize == true) {
-            wasResized = true;
-            paintBars(g2);
-            paintPointsOnImage(g2, currentStart, currentStep);
-            drawForResize = false;
+        if (offScreenImage != null && (offScreenImage.getWidth() != getWidth() || offScreenImage.getHeight() != getHeight())) {
+            //The doily is scaled by the smaller side and stays in the centre
+            double ratio = (double) Math.min(getWidth(), getHeight())
+                    / Math.min(offScreenImage.getWidth(), offScreenImage.getHeight());
+            int width = (int) (offScreenImage.getWidth() * ratio), height = (int) (offScreenImage.getHeight() * ratio);
+            g2.setPaint(backgroundColor);
+            g2.fillRect(0, 0, getWidth(), getHeight());
+            g2.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+            g2.drawImage(offScreenImage, (getWidth() - width) / 2, (getHeight() - height) / 2, width, height, null);
         } else if (offScreenImage != null) {
-
-            g2.drawImage(offScreenImage, 0, 0, null);
+            //We copy only the part of the image that needs to be painted
+            Rectangle clip = g2.getClipBounds();
+            if (clip == null) {
+                g2.drawImage(offScreenImage, 0, 0, null);
+            } else {
+                int right = clip.x + clip.width, bottom = clip.y + clip.height;
+                g2.drawImage(offScreenImage, clip.x, clip.y, right, bottom, clip.x, clip.y, right, bottom, null);
+            }
         }
+        StrokeStore strokes = history.getStrokes();
+        int currentStart = history.getCurrentStart(), currentStep = history.getCurrentStep();
+        metrics.setDrawingSize(currentStep - currentStart,
+                strokes.getStrokeOffset(currentStep) - strokes.getStrokeOffset(currentStart));
+        //The overlay is not counted in the frame
+        metrics.recordFrame(start, System.nanoTime());
+        if (showTimings) {
+            paintTimings(g2);
+        }
+    }
 
+    /**
+     * Paints the median and the 99th percentile of the timings, in
+     * milliseconds, and the size of the drawing over the top left corner.
+     *
+     * @param g2 Where to paint
+     */
+    private void paintTimings(Graphics2D g2) {
+        String[] lines = {
+            timingLine("drag", metrics.getDragLatency()),
+            timingLine("input->pixel", metrics.getInputToPixelLatency()),
+            timingLine("frame", metrics.getFrameTime()),
+            timingLine("full redraw", metrics.getFullRedrawTime()),
+            timingLine("background", metrics.getBackgroundRedrawTime()),
+            String.format("strokes %d  points %d  images %d", metrics.getStrokeCount(), metrics.getPointCount(),
+            metrics.getImagesAllocated())};
+        g2.setPaint(new Color(0, 0, 0, 170));
+        g2.fill(TIMINGS_BOUNDS);
+        g2.setPaint(Color.WHITE);
+        g2.setFont(new Font(Font.MONOSPACED, Font.PLAIN, 12));
+        g2.setRenderingHint(RenderingHints.KEY_TEXT_ANTIALIASING, RenderingHints.VALUE_TEXT_ANTIALIAS_ON);
+        int lineHeight = (TIMINGS_BOUNDS.height - 8) / lines.length;
+        for (int i = 0; i < lines.length; i++) {
+            g2.drawString(lines[i], TIMINGS_BOUNDS.x + 6, TIMINGS_BOUNDS.y + 4 + lineHeight * (i + 1) - 3);
+        }
     }
 
     /**
-     * Get the coordinates of the point at step <code>step</code> from position
-     * <code>position</code> with the new ratio <code>ratio</code>
+     * Returns a line of the timings overlay.
      *
-     * @param step Step in pointsArray
-     * @param position Position in pointsArray
-     * @param ratio Ratio between old and new window.
-     * @return Returns a point2D that is shifted for the new sizes of the window
+     * @param name Name of the timing
+     * @param summary Its latencies
+     * @return The line
      */
-    public Point2D getPointCoordonates(int step, int position, double ratio) {
-        /**
-         * To make the panel maintain it's proportions we need to first shift
-         * the point into an square coordinates, scale it and then add the
-         * remaining difference.
-         */
-        Point2D rezult;
-        Point2D tempPoint = pointsArrays.get(step).get(position);
-        Point2D tempSize = windowSizes.get(step);
-        double oldRadius = Math.min(tempSize.getX(), tempSize.getY());
-
-        double x = (tempPoint.getX() - (tempSize.getX() - oldRadius) / 2d) * ratio
-                + (getWidth() - (double) Math.min(getWidth(), getHeight())) / 2d;
-        double y = (tempPoint.getY() - (tempSize.getY() - oldRadius) / 2d) * ratio
-                + (getHeight() - (double) Math.min(getWidth(), getHeight())) / 2d;
-        rezult = new Point2D.Double(x, y);
-
-        return rezult;
+    private static String timingLine(String name, LatencySummary summary) {
+        return String.format("%-12s p50 %7.2f  p99 %7.2f ms", name, summary.getP50Micros() / 1000d,
+                summary.getP99Micros() / 1000d);
     }
 
     /**
-     * Rotates point <code>point</code> around origin <code>origin</code> with
-     * an angle of <code>angle</code>.
-     *
-     * @param origin Origin point.
-     * @param point Point to be rotated.
-     * @param angle Angle to rotate the point by.
-     * @return Returns the rotated point.
+     * Repaints only the part of the panel covered by the tiles changed since
+     * the last call.
      */
-    public Point2D getPointRotated(Point2D origin, Point2D point, double angle) {
-        double pointX, pointY;
-        pointX = (origin.getX() + (point.getX() - origin.getX()) * Math.cos(angle)
-                - (point.getY() - origin.getY()) * Math.sin(angle));
-        pointY = (origin.getY() + (point.getX() - origin.getX()) * Math.sin(angle)
-                + (point.getY() - origin.getY()) * Math.cos(angle));
-        return new Point2D.Double(pointX, pointY);
+    public void repaintDirtyTiles() {
+        Rectangle bounds = dirtyTiles.getDirtyBounds();
+        if (bounds != null) {
+            repaint(bounds);
+            if (showTimings) {
+                //The overlay shows the new timings
+                repaint(TIMINGS_BOUNDS);
+            }
+        }
+        dirtyTiles.clear();
     }
 
     /**
      * Checks if the panel has been resized, and if it was recreates the
-     * buffered image.
+     * buffered image right away, without waiting for the background thread.
      */
     public void checkIfResized() {
-        if (wasResized) {
+        if (offScreenImage == null || offScreenImage.getWidth() != getWidth() || offScreenImage.getHeight() != getHeight()) {
             repaintAndRecreate();
-            wasResized = false;
         }
     }
 
     /**
      * While mouse is dragged clicked and in the panel we add the it's
      * coordinates to the array of points and draw them on the current
-     * offScreenImage.
+     * offScreenImage. If the last point can be dropped without moving the
+     * stroke by more than the tolerance, it is moved to the mouse instead.
      *
      * @param e \\\
      */
     @Override
     public void mouseDragged(MouseEvent e) {
         if (clicked && mouseInPanel) {
-            pointsArrays.get(currentStep - 1).add(new Point2D.Double(e.getX(), e.getY()));
+            long start = System.nanoTime();
+            metrics.inputReceived(start);
+            if (simplifier.add(e.getX(), e.getY())) {
+                history.addPoint(e.getX(), e.getY());
+            } else {
+                history.moveLastPoint(e.getX(), e.getY());
+            }
             addLastPointsToImage();
-            repaint();
+            repaintDirtyTiles();
+            metrics.recordDrag(System.nanoTime() - start);
         }
     }
 
@@ -421,38 +499,44 @@ public class DrawingPanel extends JPanel implements MouseMotionListener, MouseLi
 
     /**
      * When a mouse is pressed, then we save the current line size, window size,
-     * color and point to the array.
+     * color and point to the array. If the offScreen image is not up to date,
+     * it is painted again first, so the new stroke is drawn on the current
+     * drawing.
      *
      * @param e \\\
      */
     @Override
     public void mousePressed(MouseEvent e) {
-        //If the panel was resized then we redraw the buffered image.
-        checkIfResized();
-        //Increment step
-        currentStep++;
-        windowSizes.add(new Point2D.Double(getWidth(), getHeight()));
-        colors.add(currentColor);
-        sizes.add(currentSize);
-
-        pointsArrays.add(new ArrayList<>());
-        pointsArrays.get(currentStep - 1).add(new Point2D.Double(e.getX(), e.getY()));
+        metrics.inputReceived(System.nanoTime());
+        //If the panel was resized or the drawing loaded, the stroke can't wait for the background thread
+        if (!isOffScreenImageCurrent(history.getCurrentStep())) {
+            repaintAndRecreate();
+        } else if (renderService.isRendering()) {
+            //The image painted in the background would not have the new stroke
+            renderService.cancel();
+        }
+        //Start a new step after the current one, this replaces the undone steps
+        snapshots.removeAfter(history.getCurrentStep());
+        history.addStroke(currentColor.getRGB(), currentSize, getWidth(), getHeight());
+        history.addPoint(e.getX(), e.getY());
+        simplifier.start(e.getX(), e.getY());
         clicked = true;
         //Prints points to last image.
         addLastPointsToImage();
-        repaint();
+        repaintDirtyTiles();
     }
 
     /**
      * If the mouse is released, then the current step is finished and we can
-     * recreate the off screen image.
+     * add it to the off screen image.
      *
      * @param e \\\
      */
     @Override
     public void mouseReleased(MouseEvent e) {
         clicked = false;
-        repaintAndRecreate();
+        commitLastStroke();
+        repaint();
     }
 
     /**
@@ -476,30 +560,22 @@ public class DrawingPanel extends JPanel implements MouseMotionListener, MouseLi
     }
 
     /**
-     * Returns the arrayList of arrayList of Point2D to be drawn on the screen.
-     *
-     * @return arrayList of arrayList of Point2D.
-     */
-    public ArrayList<ArrayList<Point2D>> getPointsArray() {
-        return pointsArrays;
-    }
-
-    /**
-     * Returns the arrayList of Colours of the lines for each step.
+     * Returns the history of the drawing.
      *
-     * @return arrayList of Colours.
+     * @return DrawingHistory of the panel.
      */
-    public ArrayList<Color> getColorArray() {
-        return colors;
+    public DrawingHistory getHistory() {
+        return history;
     }
 
     /**
-     * Returns the ArrayList of Integers that contain the line sizes.
+     * Returns the store with all the strokes to be drawn on the screen. It
+     * also contains the undone strokes after the current step.
      *
-     * @return ArrayList of Integers .
+     * @return StrokeStore of the panel.
      */
-    public ArrayList<Integer> getSizesArray() {
-        return sizes;
+    public StrokeStore getStrokes() {
+        return history.getStrokes();
     }
 
     /**
@@ -508,16 +584,7 @@ public class DrawingPanel extends JPanel implements MouseMotionListener, MouseLi
      * @return ArrayList of Integers.
      */
     public ArrayList<Integer> getCurrentStarts() {
-        return currentStarts;
-    }
-
-    /**
-     * Returns the ArrayList of Point2D that contains the past window sizes.
-     *
-     * @return ArrayList of Point2D.
-     */
-    public ArrayList<Point2D> getWindowSizes() {
-        return windowSizes;
+        return history.getCurrentStarts();
     }
 
     /**
@@ -526,7 +593,7 @@ public class DrawingPanel extends JPanel implements MouseMotionListener, MouseLi
      * @return number of steps.
      */
     public int getNumberOfPoints() {
-        return pointsArrays.size();
+        return history.getCurrentStep();
     }
 
     /**
@@ -562,7 +629,7 @@ public class DrawingPanel extends JPanel implements MouseMotionListener, MouseLi
      * @return currentStep
      */
     public int getCurrentStep() {
-        return currentStep;
+        return history.getCurrentStep();
     }
 
     /**
@@ -571,7 +638,7 @@ public class DrawingPanel extends JPanel implements MouseMotionListener, MouseLi
      * @return currentStart
      */
     public int getCurrentStart() {
-        return currentStart;
+        return history.getCurrentStart();
     }
 
     /**
@@ -594,90 +661,34 @@ public class DrawingPanel extends JPanel implements MouseMotionListener, MouseLi
 
     /**
      * Sets the size <code>size</code>,sectors <code>sectors</code>,showbars
-     * <code>showbars</code>,reflect <code>reflect</code>,currentStep
-     * <code>currentStep</code>, currentStart <code>currentStart</code> and
-     * background color <code>backgroundColor</code>.
+     * <code>showbars</code>,reflect <code>reflect</code> and background color
+     * <code>backgroundColor</code>.
      *
      * @param size New size
      * @param sectors New sectors
      * @param showbars New showbars
      * @param reflect New reflect
-     * @param currentStep New currentStep
-     * @param currentStart New currentStart
      * @param backgroundColor New backgroundColor
      */
-    public void setParameters(int size, int sectors, int showbars, int reflect, int currentStep, int currentStart, int backgroundColor) {
+    public void setParameters(int size, int sectors, int showbars, int reflect, int backgroundColor) {
         currentSize = size;
         numberOfSectors = sectors;
         showBars = showbars == 1;
         this.reflect = reflect == 1;
-        this.currentStep = currentStep;
-        this.currentStart = currentStart;
         this.backgroundColor = new Color(backgroundColor);
     }
 
     /**
-     * Sets the colours <code>colorsArray</code> array.
-     *
-     * @param colorsArray New color Array.
-     */
-    public void setColorArray(ArrayList<Color> colorsArray) {
-        colors = colorsArray;
-    }
-
-    /**
-     * Sets if we need to draw directly on the panel instead of painting the
-     * buffered image.
-     *
-     * @param drawForResize New drawForResize
-     */
-    public void setDrawForResize(boolean drawForResize) {
-        this.drawForResize = drawForResize;
-    }
-
-    /**
-     * Sets the new array of line sizes <code>sizesArray</code>.
-     *
-     * @param sizesArray New sizesArray.
-     */
-    public void setSizesArray(ArrayList<Integer> sizesArray) {
-        sizes = sizesArray;
-    }
-
-    /**
-     * Sets the new array of window sizes <code> windowSizesArray</code>.
-     *
-     * @param windowSizesArray New windowSizesArray
-     */
-    public void setWindowSizesArray(ArrayList<Point2D> windowSizesArray) {
-        windowSizes = windowSizesArray;
-    }
-
-    /**
-     * Sets the new points Arrays <code>pointsArrays</code>.
+     * Sets the new history <code>history</code>, with its strokes, current
+     * step and clears.
      *
-     * @param pointsArrays New pointsArrays
+     * @param history New history
      */
-    public void setPointsArray(ArrayList<ArrayList<Point2D>> pointsArrays) {
-        this.pointsArrays = pointsArrays;
-    }
-
-    /**
-     * Sets the new currentStarts Array <code>currentStartsArray</code>.
-     *
-     * @param currentStartsArray New currentStartsArray
-     */
-    public void setCurrentStarts(ArrayList<Integer> currentStartsArray) {
-        currentStarts = currentStartsArray;
-    }
-
-    /**
-     * Sets the current step  <code>step</code>.
-     *
-     * @param step New step.
-     */
-    public void setCurrentStep(int step) {
-        currentStep = step;
+    public void setHistory(DrawingHistory history) {
+        this.history = history;
+        snapshots.clear();
+        //The offScreen image still shows the old drawing
+        paintedStep = -1;
     }
 
     /**
@@ -690,15 +701,6 @@ public class DrawingPanel extends JPanel implements MouseMotionListener, MouseLi
         backgroundColor = newBackgroundColor;
     }
 
-    /**
-     * Sets the new startStep <code>step</code>.
-     *
-     * @param step New StartStep
-     */
-    public void startStep(int step) {
-        currentStart = step;
-    }
-
     /**
      * Sets new colour <code>color</code>.
      *
@@ -735,6 +737,35 @@ public class DrawingPanel extends JPanel implements MouseMotionListener, MouseLi
         this.reflect = reflect;
     }
 
+    /**
+     * Returns the timings and counters of the panel.
+     *
+     * @return PanelMetrics of the panel.
+     */
+    public PanelMetrics getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * Sets if the timings overlay is shown and repaints the panel.
+     *
+     * @param show true to show it
+     */
+    public void setShowTimings(boolean show) {
+        showTimings = show;
+        repaint();
+    }
+
+    /**
+     * Sets how far, in pixels, a stored stroke can stray from the mouse path.
+     * With 0 only the points exactly on a line are dropped.
+     *
+     * @param tolerance New tolerance
+     */
+    public void setSimplifyTolerance(float tolerance) {
+        simplifier.setTolerance(tolerance);
+    }
+
     /**
      * Sets the new showBars <code>show</code>.
      *
@@ -0,0 +1,212 @@
+
+import java.awt.Color;
+import java.awt.Graphics;
+import java.awt.Point;
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+import java.util.HashSet;
+import java.util.Set;
+import javax.swing.*;
+
+/**
+ * This class shows the thumbnails of all the drawings in an archive in one
+ * row. Like every JList, it only paints the cells that are in sight, with a
+ * single PicturePanel that is given the thumbnail of every cell in turn, so
+ * no component is created for a saved drawing. The thumbnails are painted
+ * from the strokes by the loader only when their cell is painted, and the
+ * ones scrolled out of sight before a worker gets to them are skipped. The
+ * memory used is bounded by the viewport and the memory cache of the loader,
+ * not by the number of drawings in the archive.
+ *
+ * @author Alexandru Amarandei Stanescu aas1u16
+ */
+public class GalleryPanel extends JList<String> {
+
+    private final ThumbnailLoader loader;
+    private final ArchiveModel model = new ArchiveModel();
+    //Paints every cell
+    private final PicturePanel cell = new PicturePanel();
+    //Records that could not be read, so they are not asked for again
+    private final Set<String> missing = new HashSet<>();
+    private int thumbnailSize = 1;
+    //Cells painted last time, read by the loader threads
+    private volatile int firstVisible = 0, lastVisible = -1;
+
+    /**
+     * Creates an empty gallery that loads its thumbnails with
+     * <code>loader</code>.
+     *
+     * @param loader Loads the thumbnails in the background
+     */
+    public GalleryPanel(ThumbnailLoader loader) {
+        this.loader = loader;
+        setModel(model);
+        setLayoutOrientation(JList.HORIZONTAL_WRAP);
+        setVisibleRowCount(1);
+        setSelectionMode(ListSelectionModel.SINGLE_SELECTION);
+        setCellRenderer((JList<? extends String> list, String path, int index, boolean isSelected,
+                boolean cellHasFocus) -> {
+            cell.setPicture(thumbnail(index), missing.contains(model.getRecordKey(index)));
+            //The selected picture has blue borders
+            cell.setBackground(isSelected ? Color.BLUE : getBackground());
+            return cell;
+        });
+        setThumbnailSize(thumbnailSize);
+    }
+
+    /**
+     * Shows the drawings of <code>archive</code>.
+     *
+     * @param archive Archive with the saved drawings
+     */
+    public void setArchive(DoilyArchive archive) {
+        model.setArchive(archive);
+        missing.clear();
+    }
+
+    /**
+     * Sets the width and height of the cells to <code>size</code>.
+     *
+     * @param size Size of a cell, in pixels
+     */
+    public void setThumbnailSize(int size) {
+        thumbnailSize = Math.max(size, 7);
+        setFixedCellWidth(thumbnailSize);
+        setFixedCellHeight(thumbnailSize);
+        repaint();
+    }
+
+    /**
+     * Shows the drawing that was added at the end of the archive.
+     */
+    public void pictureAdded() {
+        int last = model.getSize() - 1;
+        model.added(last);
+        ensureIndexIsVisible(last);
+    }
+
+    /**
+     * Removes the drawing that was at position <code>n</code> of the archive.
+     *
+     * @param n Index of the deleted drawing
+     */
+    public void pictureRemoved(int n) {
+        clearSelection();
+        model.removed(n);
+    }
+
+    /**
+     * Remembers which cells are in sight before they are painted.
+     *
+     * @param g Graphics of the list
+     */
+    @Override
+    protected void paintComponent(Graphics g) {
+        Rectangle visible = getVisibleRect();
+        int first = locationToIndex(new Point(visible.x, visible.y));
+        int last = locationToIndex(new Point(visible.x + visible.width - 1, visible.y));
+        firstVisible = first;
+        lastVisible = last;
+        super.paintComponent(g);
+    }
+
+    /**
+     * Returns the thumbnail of record <code>index</code> if it is in memory.
+     * If not, it is painted in the background and the list is painted again
+     * when it arrives.
+     *
+     * @param index Index of the cell
+     * @return The thumbnail, or null if it is not painted yet
+     */
+    private BufferedImage thumbnail(int index) {
+        String key = model.getRecordKey(index);
+        if (missing.contains(key)) {
+            return null;
+        }
+        DoilyArchive archive = model.getArchive();
+        int size = thumbnailSize - 6;
+        BufferedImage thumbnail = loader.getCached(archive, index, size);
+        if (thumbnail == null) {
+            loader.load(archive, index, size, () -> index >= firstVisible && index <= lastVisible,
+                    (BufferedImage loaded) -> {
+                        if (loaded == null) {
+                            missing.add(key);
+                        }
+                        repaint();
+                    });
+        }
+        return thumbnail;
+    }
+
+    /**
+     * The list of picture paths, read straight from the index of the archive.
+     */
+    private static class ArchiveModel extends AbstractListModel<String> {
+
+        private DoilyArchive archive = null;
+
+        /**
+         * Reads the paths from <code>newArchive</code>.
+         *
+         * @param newArchive Archive with the saved drawings
+         */
+        void setArchive(DoilyArchive newArchive) {
+            int oldSize = getSize();
+            archive = null;
+            if (oldSize > 0) {
+                fireIntervalRemoved(this, 0, oldSize - 1);
+            }
+            archive = newArchive;
+            if (getSize() > 0) {
+                fireIntervalAdded(this, 0, getSize() - 1);
+            }
+        }
+
+        /**
+         * Tells the list that record <code>n</code> was added.
+         *
+         * @param n Index of the record
+         */
+        void added(int n) {
+            fireIntervalAdded(this, n, n);
+        }
+
+        /**
+         * Tells the list that record <code>n</code> was removed.
+         *
+         * @param n Index of the record
+         */
+        void removed(int n) {
+            fireIntervalRemoved(this, n, n);
+        }
+
+        /**
+         * Returns the archive shown by the list.
+         *
+         * @return The archive
+         */
+        DoilyArchive getArchive() {
+            return archive;
+        }
+
+        /**
+         * Returns the key of record <code>n</code> in the archive.
+         *
+         * @param n Index of the record
+         * @return Key of the record
+         */
+        String getRecordKey(int n) {
+            return archive.getRecordKey(n);
+        }
+
+        @Override
+        public int getSize() {
+            return archive == null ? 0 : archive.size();
+        }
+
+        @Override
+        public String getElementAt(int index) {
+            return archive.getName(index) + ".png";
+        }
+    }
+}
@@ -0,0 +1,133 @@
+
+import java.util.Arrays;
+
+/**
+ * This class counts latencies in nanoseconds in buckets whose width grows
+ * with the latency, 16 buckets for every power of two, so any percentile is
+ * known within about 6% while the counts take a fixed 8 KB, however many
+ * latencies are recorded.
+ *
+ * @author Alexandru Amarandei Stanescu aas1u16
+ */
+public class LatencyHistogram {
+
+    //Buckets for every power of two, as a power of two
+    private static final int SUB_BUCKET_BITS = 4;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+
+    private final long[] counts = new long[64 * SUB_BUCKETS];
+    private long count, total, max;
+
+    /**
+     * Counts a latency.
+     *
+     * @param nanos Latency in nanoseconds
+     */
+    public void record(long nanos) {
+        if (nanos < 0) {
+            nanos = 0;
+        }
+        counts[bucket(nanos)]++;
+        count++;
+        total += nanos;
+        max = Math.max(max, nanos);
+    }
+
+    /**
+     * Returns the bucket of <code>nanos</code>.
+     *
+     * @param nanos Latency
+     * @return Index of the bucket
+     */
+    private static int bucket(long nanos) {
+        if (nanos < SUB_BUCKETS) {
+            return (int) nanos;
+        }
+        int shift = 63 - Long.numberOfLeadingZeros(nanos) - SUB_BUCKET_BITS;
+        return (shift + 1) * SUB_BUCKETS + (int) ((nanos >>> shift) & (SUB_BUCKETS - 1));
+    }
+
+    /**
+     * Returns the biggest latency that falls in <code>bucket</code>.
+     *
+     * @param bucket Index of the bucket
+     * @return Latency in nanoseconds
+     */
+    private static long highestInBucket(int bucket) {
+        if (bucket < SUB_BUCKETS) {
+            return bucket;
+        }
+        int shift = bucket / SUB_BUCKETS - 1;
+        long mantissa = SUB_BUCKETS + bucket % SUB_BUCKETS;
+        return ((mantissa + 1) << shift) - 1;
+    }
+
+    /**
+     * Returns the latency under which <code>percentile</code> percent of the
+     * latencies are.
+     *
+     * @param percentile Between 0 and 100
+     * @return Latency in nanoseconds, 0 if nothing was recorded
+     */
+    public long getPercentile(double percentile) {
+        if (count == 0) {
+            return 0;
+        }
+        long wanted = Math.max(1, (long) Math.ceil(count * percentile / 100));
+        long seen = 0;
+        for (int i = 0; i < counts.length; i++) {
+            seen += counts[i];
+            if (seen >= wanted) {
+                return Math.min(highestInBucket(i), max);
+            }
+        }
+        return max;
+    }
+
+    /**
+     * Returns how many latencies were recorded.
+     *
+     * @return Number of latencies
+     */
+    public long getCount() {
+        return count;
+    }
+
+    /**
+     * Returns the average latency.
+     *
+     * @return Latency in nanoseconds, 0 if nothing was recorded
+     */
+    public long getMean() {
+        return count == 0 ? 0 : total / count;
+    }
+
+    /**
+     * Returns the biggest latency.
+     *
+     * @return Latency in nanoseconds
+     */
+    public long getMax() {
+        return max;
+    }
+
+    /**
+     * Returns the count and the main percentiles in microseconds.
+     *
+     * @return The summary
+     */
+    public LatencySummary getSummary() {
+        return new LatencySummary(count, getMean() / 1000, getPercentile(50) / 1000, getPercentile(99) / 1000,
+                max / 1000);
+    }
+
+    /**
+     * Forgets every latency.
+     */
+    public void clear() {
+        Arrays.fill(counts, 0);
+        count = 0;
+        total = 0;
+        max = 0;
+    }
+}
@@ -0,0 +1,77 @@
+
+import java.beans.ConstructorProperties;
+
+/**
+ * This class holds the count and the main percentiles of a LatencyHistogram
+ * at one moment, in microseconds. It is what the JMX clients see for every
+ * latency of the drawing panel.
+ *
+ * @author Alexandru Amarandei Stanescu aas1u16
+ */
+public class LatencySummary {
+
+    private final long count, meanMicros, p50Micros, p99Micros, maxMicros;
+
+    /**
+     * Creates a summary with the given values.
+     *
+     * @param count Number of latencies
+     * @param meanMicros Average latency
+     * @param p50Micros Median latency
+     * @param p99Micros 99th percentile
+     * @param maxMicros Biggest latency
+     */
+    @ConstructorProperties({"count", "meanMicros", "p50Micros", "p99Micros", "maxMicros"})
+    public LatencySummary(long count, long meanMicros, long p50Micros, long p99Micros, long maxMicros) {
+        this.count = count;
+        this.meanMicros = meanMicros;
+        this.p50Micros = p50Micros;
+        this.p99Micros = p99Micros;
+        this.maxMicros = maxMicros;
+    }
+
+    /**
+     * Returns the number of latencies.
+     *
+     * @return count
+     */
+    public long getCount() {
+        return count;
+    }
+
+    /**
+     * Returns the average latency.
+     *
+     * @return Microseconds
+     */
+    public long getMeanMicros() {
+        return meanMicros;
+    }
+
+    /**
+     * Returns the median latency.
+     *
+     * @return Microseconds
+     */
+    public long getP50Micros() {
+        return p50Micros;
+    }
+
+    /**
+     * Returns the 99th percentile.
+     *
+     * @return Microseconds
+     */
+    public long getP99Micros() {
+        return p99Micros;
+    }
+
+    /**
+     * Returns the biggest latency.
+     *
+     * @return Microseconds
+     */
+    public long getMaxMicros() {
+        return maxMicros;
+    }
+}
@@ -0,0 +1,145 @@
+
+/**
+ * This class records where the time of the drawing panel goes: how long the
+ * mouse events, the frames and the full redraws take, and how long a mouse
+ * event waits before it is on the screen. The panel records the times on the
+ * Swing thread and the background thread, while JMX and the timings overlay
+ * read them, so every method is synchronized.
+ *
+ * @author Alexandru Amarandei Stanescu aas1u16
+ */
+public class PanelMetrics implements PanelMetricsMXBean {
+
+    private final LatencyHistogram drag = new LatencyHistogram();
+    private final LatencyHistogram inputToPixel = new LatencyHistogram();
+    private final LatencyHistogram frame = new LatencyHistogram();
+    private final LatencyHistogram fullRedraw = new LatencyHistogram();
+    private final LatencyHistogram backgroundRedraw = new LatencyHistogram();
+    private int strokeCount, pointCount;
+    private long imagesAllocated;
+    //Time of the oldest mouse event that is not on the screen yet, -1 if there is none
+    private long unpaintedInput = -1;
+
+    /**
+     * Remembers that a mouse event arrived at <code>nanos</code>, if no older
+     * event is waiting to be painted.
+     *
+     * @param nanos System.nanoTime of the event
+     */
+    public synchronized void inputReceived(long nanos) {
+        if (unpaintedInput < 0) {
+            unpaintedInput = nanos;
+        }
+    }
+
+    /**
+     * Records the time of a mouseDragged.
+     *
+     * @param nanos Time in nanoseconds
+     */
+    public synchronized void recordDrag(long nanos) {
+        drag.record(nanos);
+    }
+
+    /**
+     * Records a frame that ended at <code>end</code>. The mouse events that
+     * arrived before it are now on the screen.
+     *
+     * @param start System.nanoTime at the start of the frame
+     * @param end System.nanoTime at the end of the frame
+     */
+    public synchronized void recordFrame(long start, long end) {
+        frame.record(end - start);
+        if (unpaintedInput >= 0) {
+            inputToPixel.record(end - unpaintedInput);
+            unpaintedInput = -1;
+        }
+    }
+
+    /**
+     * Records the time of a paintBufferedImage.
+     *
+     * @param nanos Time in nanoseconds
+     */
+    public synchronized void recordFullRedraw(long nanos) {
+        fullRedraw.record(nanos);
+    }
+
+    /**
+     * Records the time an image painted in the background took.
+     *
+     * @param nanos Time in nanoseconds
+     */
+    public synchronized void recordBackgroundRedraw(long nanos) {
+        backgroundRedraw.record(nanos);
+    }
+
+    /**
+     * Counts an allocated offScreen image.
+     */
+    public synchronized void imageAllocated() {
+        imagesAllocated++;
+    }
+
+    /**
+     * Sets the size of the drawing.
+     *
+     * @param strokes Number of strokes
+     * @param points Number of points
+     */
+    public synchronized void setDrawingSize(int strokes, int points) {
+        strokeCount = strokes;
+        pointCount = points;
+    }
+
+    @Override
+    public synchronized LatencySummary getDragLatency() {
+        return drag.getSummary();
+    }
+
+    @Override
+    public synchronized LatencySummary getInputToPixelLatency() {
+        return inputToPixel.getSummary();
+    }
+
+    @Override
+    public synchronized LatencySummary getFrameTime() {
+        return frame.getSummary();
+    }
+
+    @Override
+    public synchronized LatencySummary getFullRedrawTime() {
+        return fullRedraw.getSummary();
+    }
+
+    @Override
+    public synchronized LatencySummary getBackgroundRedrawTime() {
+        return backgroundRedraw.getSummary();
+    }
+
+    @Override
+    public synchronized int getStrokeCount() {
+        return strokeCount;
+    }
+
+    @Override
+    public synchronized int getPointCount() {
+        return pointCount;
+    }
+
+    @Override
+    public synchronized long getImagesAllocated() {
+        return imagesAllocated;
+    }
+
+    @Override
+    public synchronized void resetStatistics() {
+        drag.clear();
+        inputToPixel.clear();
+        frame.clear();
+        fullRedraw.clear();
+        backgroundRedraw.clear();
+        imagesAllocated = 0;
+        unpaintedInput = -1;
+    }
+}
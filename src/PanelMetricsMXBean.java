@@ -0,0 +1,75 @@
+
+/**
+ * The timings and counters of the drawing panel that are shown through JMX,
+ * under DigitalDoyle:type=DrawingPanel. All the times are in microseconds
+ * and are counted from the start of the application or the last reset.
+ *
+ * @author Alexandru Amarandei Stanescu aas1u16
+ */
+public interface PanelMetricsMXBean {
+
+    /**
+     * Returns the time mouseDragged takes to add a point and paint its
+     * segment in the offScreen image.
+     *
+     * @return The latencies
+     */
+    LatencySummary getDragLatency();
+
+    /**
+     * Returns the time from when the panel gets a mouse event to when the
+     * paintComponent that shows it ends.
+     *
+     * @return The latencies
+     */
+    LatencySummary getInputToPixelLatency();
+
+    /**
+     * Returns the time paintComponent takes.
+     *
+     * @return The latencies
+     */
+    LatencySummary getFrameTime();
+
+    /**
+     * Returns the time paintBufferedImage takes to paint the whole image on
+     * the Swing thread.
+     *
+     * @return The latencies
+     */
+    LatencySummary getFullRedrawTime();
+
+    /**
+     * Returns the time from asking for an image painted in the background to
+     * getting it.
+     *
+     * @return The latencies
+     */
+    LatencySummary getBackgroundRedrawTime();
+
+    /**
+     * Returns the number of strokes in the drawing.
+     *
+     * @return Number of strokes
+     */
+    int getStrokeCount();
+
+    /**
+     * Returns the number of points in the drawing.
+     *
+     * @return Number of points
+     */
+    int getPointCount();
+
+    /**
+     * Returns how many offScreen images were allocated.
+     *
+     * @return Number of images
+     */
+    long getImagesAllocated();
+
+    /**
+     * Forgets all the timings and the number of images.
+     */
+    void resetStatistics();
+}
@@ -0,0 +1,273 @@
+
+import java.awt.BasicStroke;
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * This class paints doilies using all the cores. The sectors are split in
+ * bands and every band is painted by its own task in a separate layer. A
+ * layer doesn't hold colours, but the number of the last stroke that covered
+ * every pixel. At the end, every pixel takes the colour of the highest stroke
+ * from all the layers, which is the stroke that would have been painted last
+ * by a single renderer. Every layer has the size of the whole image, so the
+ * strokes are rasterized exactly as by a DoilyRenderer and the image is the
+ * same, pixel by pixel.
+ *
+ * Strokes that are not opaque can't be painted like this, so those scenes are
+ * painted by a single renderer. So are the images whose layers don't fit in a
+ * quarter of the memory the heap has left.
+ *
+ * @author Alexandru Amarandei Stanescu aas1u16
+ */
+public class ParallelDoilyRenderer {
+
+    //Most memory that all the layers of an image can use
+    private static final long MAX_LAYER_MEMORY = 256 * 1024 * 1024;
+    //The layers use at most this part of the memory the heap can still grow into
+    private static final int LAYER_MEMORY_FRACTION = 4;
+    //Number of strokes painted before checking if the render was cancelled
+    private static final int STROKES_PER_CHECK = 64;
+    //Rows smaller than this are not split again when the layers are merged
+    private static final int MIN_ROWS = 16;
+    //The stroke numbers are kept in the 24 bits of an RGB pixel
+    private static final int MAX_STROKES = 0xFFFFFF;
+
+    private final ForkJoinPool pool;
+    //Every worker thread needs its own renderer, because of the buffers
+    private final ThreadLocal<DoilyRenderer> renderers = ThreadLocal.withInitial(DoilyRenderer::new);
+    private final ThreadLocal<StrokeRenderer> strokeRenderers = ThreadLocal.withInitial(StrokeRenderer::new);
+
+    /**
+     * Creates a renderer that uses the common fork-join pool.
+     */
+    public ParallelDoilyRenderer() {
+        this(ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Creates a renderer that uses the pool <code>pool</code>.
+     *
+     * @param pool Pool that runs the layers
+     */
+    public ParallelDoilyRenderer(ForkJoinPool pool) {
+        this.pool = pool;
+    }
+
+    /**
+     * Paints <code>scene</code> into a new image of <code>width</code> x
+     * <code>height</code>.
+     *
+     * @param scene Scene to paint
+     * @param width Width of the image
+     * @param height Height of the image
+     * @return The image, or null if the thread was interrupted while painting
+     */
+    public BufferedImage render(DoilyScene scene, int width, int height) {
+        BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        return paintScene(image, scene) ? image : null;
+    }
+
+    /**
+     * Paints <code>scene</code> over the whole <code>image</code>, which must
+     * be of type TYPE_INT_RGB. The calling thread waits until all the layers
+     * are painted and merged.
+     *
+     * @param image Image to paint on
+     * @param scene Scene to paint
+     * @return false if the thread was interrupted while painting
+     */
+    public boolean paintScene(BufferedImage image, DoilyScene scene) {
+        int width = image.getWidth(), height = image.getHeight();
+        int layers = Math.min(pool.getParallelism(), scene.getSectors());
+        layers = (int) Math.min(layers, getLayerMemory() / (4L * width * height));
+        if (layers < 2 || !canUseLayers(scene.getStrokes())) {
+            Graphics2D g2 = image.createGraphics();
+            boolean finished = renderers.get().paintScene(g2, scene, width, height);
+            g2.dispose();
+            return finished;
+        }
+        AtomicBoolean cancelled = new AtomicBoolean(false);
+        int numberOfLayers = layers;
+        ForkJoinTask<?> task = pool.submit(() -> paintLayers(image, scene, numberOfLayers, cancelled));
+        try {
+            task.get();
+        } catch (InterruptedException e) {
+            //The workers are not interrupted, so we tell them to stop
+            cancelled.set(true);
+            Thread.currentThread().interrupt();
+            return false;
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Could not paint the doily", e.getCause());
+        }
+        return !cancelled.get();
+    }
+
+    /**
+     * Returns the memory the layers of an image can use: a part of what the
+     * heap can still hold, so a small heap paints with a single renderer
+     * instead of running out of memory.
+     *
+     * @return Memory in bytes
+     */
+    private static long getLayerMemory() {
+        Runtime runtime = Runtime.getRuntime();
+        long used = runtime.totalMemory() - runtime.freeMemory();
+        return Math.min(MAX_LAYER_MEMORY, Math.max(0, runtime.maxMemory() - used) / LAYER_MEMORY_FRACTION);
+    }
+
+    /**
+     * Checks if every stroke is opaque and if there are not too many of them
+     * to be numbered in a layer.
+     *
+     * @param strokes Strokes to check
+     * @return true if the strokes can be painted in layers
+     */
+    private boolean canUseLayers(StrokeStore strokes) {
+        if (strokes.getStrokeCount() >= MAX_STROKES) {
+            return false;
+        }
+        for (int i = 0; i < strokes.getStrokeCount(); i++) {
+            if ((strokes.getColor(i) >>> 24) != 0xFF) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Paints the background and the bars, then paints the layers at the same
+     * time and merges them into <code>image</code>. Runs inside the pool.
+     *
+     * @param image Image to paint on
+     * @param scene Scene to paint
+     * @param numberOfLayers Number of sector bands
+     * @param cancelled Set when the render is cancelled
+     */
+    private void paintLayers(BufferedImage image, DoilyScene scene, int numberOfLayers, AtomicBoolean cancelled) {
+        int width = image.getWidth(), height = image.getHeight();
+        Graphics2D g2 = image.createGraphics();
+        //Paint current background
+        g2.setPaint(new Color(scene.getBackground()));
+        g2.fillRect(0, 0, width, height);
+        //Paints the bars
+        if (scene.getBars()) {
+            renderers.get().paintBars(g2, scene.getSectors(), width, height);
+        }
+        g2.dispose();
+        //Every layer paints a band of sectors
+        LayerTask[] tasks = new LayerTask[numberOfLayers];
+        for (int i = 0; i < numberOfLayers; i++) {
+            tasks[i] = new LayerTask(scene, width, height, i * scene.getSectors() / numberOfLayers,
+                    (i + 1) * scene.getSectors() / numberOfLayers, cancelled);
+        }
+        ForkJoinTask.invokeAll(tasks);
+        if (cancelled.get()) {
+            return;
+        }
+        int[][] layers = new int[numberOfLayers][];
+        for (int i = 0; i < numberOfLayers; i++) {
+            layers[i] = ((DataBufferInt) tasks[i].layer.getRaster().getDataBuffer()).getData();
+        }
+        int[] pixels = ((DataBufferInt) image.getRaster().getDataBuffer()).getData();
+        new MergeTask(pixels, layers, scene.getStrokes(), width, 0, height).invoke();
+    }
+
+    /**
+     * Paints the number of every stroke (plus one, so 0 means no stroke) for
+     * the sectors from <code>fromSector</code> to <code>toSector</code> in a
+     * layer of its own.
+     */
+    private class LayerTask extends RecursiveAction {
+
+        private final DoilyScene scene;
+        private final int width, height, fromSector, toSector;
+        private final AtomicBoolean cancelled;
+        private BufferedImage layer;
+
+        LayerTask(DoilyScene scene, int width, int height, int fromSector, int toSector, AtomicBoolean cancelled) {
+            this.scene = scene;
+            this.width = width;
+            this.height = height;
+            this.fromSector = fromSector;
+            this.toSector = toSector;
+            this.cancelled = cancelled;
+        }
+
+        @Override
+        protected void compute() {
+            DoilyRenderer renderer = renderers.get();
+            StrokeRenderer strokeRenderer = strokeRenderers.get();
+            SymmetryEngine symmetry = renderer.getSymmetry();
+            symmetry.setNumberOfSectors(scene.getSectors());
+            StrokeStore strokes = scene.getStrokes();
+            layer = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+            Graphics2D g2 = layer.createGraphics();
+            for (int i = 0; i < strokes.getStrokeCount(); i++) {
+                if (i % STROKES_PER_CHECK == 0 && cancelled.get()) {
+                    break;
+                }
+                int numberOfPoints = strokes.getStrokePointCount(i);
+                if (numberOfPoints == 0) {
+                    continue;
+                }
+                int size = strokes.getSize(i);
+                g2.setColor(new Color(i + 1));
+                g2.setStroke(new BasicStroke(size, BasicStroke.CAP_ROUND, BasicStroke.JOIN_ROUND));
+                //Only the sectors of the band are rotated
+                renderer.transformStrokeAtScale(strokes, i, width, height, 1, fromSector, toSector);
+                strokeRenderer.drawStroke(g2, symmetry, size, scene.getReflect(), height, fromSector, toSector);
+            }
+            g2.dispose();
+            //The worker keeps its renderer, but not the buffers of a long stroke
+            symmetry.trim();
+        }
+    }
+
+    /**
+     * Gives the rows from <code>from</code> to <code>to</code> the colour of
+     * the highest stroke in the layers, splitting them in two while there are
+     * enough of them.
+     */
+    private static class MergeTask extends RecursiveAction {
+
+        private final int[] pixels;
+        private final int[][] layers;
+        private final StrokeStore strokes;
+        private final int width, from, to;
+
+        MergeTask(int[] pixels, int[][] layers, StrokeStore strokes, int width, int from, int to) {
+            this.pixels = pixels;
+            this.layers = layers;
+            this.strokes = strokes;
+            this.width = width;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from > MIN_ROWS) {
+                int middle = (from + to) >>> 1;
+                invokeAll(new MergeTask(pixels, layers, strokes, width, from, middle),
+                        new MergeTask(pixels, layers, strokes, width, middle, to));
+                return;
+            }
+            for (int p = from * width; p < to * width; p++) {
+                int stroke = 0;
+                for (int[] layer : layers) {
+                    stroke = Math.max(stroke, layer[p] & 0xFFFFFF);
+                }
+                if (stroke != 0) {
+                    pixels[p] = strokes.getColor(stroke - 1) & 0xFFFFFF;
+                }
+            }
+        }
+    }
+}
@@ -1,29 +1,22 @@
 
+import java.awt.Color;
 import java.awt.Graphics;
 import java.awt.image.BufferedImage;
-import java.io.File;
-import java.io.IOException;
-import javax.imageio.ImageIO;
 import javax.swing.*;
 
 /**
- * The class is a JPanel that holds an image and has an order (index) field.
+ * The class is a JPanel that paints the thumbnail of one saved picture. The
+ * gallery uses a single instance to paint all its cells, so it only holds the
+ * picture of the cell that is being painted. Until the thumbnail is loaded a
+ * placeholder is shown.
  *
  * @author Alexandru Amarandei Stanescu aas1u16
  */
 public class PicturePanel extends JPanel {
 
-    private int order = -1;
     BufferedImage image = null;
-
-    /**
-     * Constructor that sets the order of the class instance to <code> x</code>.
-     *
-     * @param x Index
-     */
-    public PicturePanel(int x) {
-        order = x;
-    }
+    //If the picture could not be loaded
+    private boolean missing = false;
 
     /**
      * Paints the current image on <code>g</code>.
@@ -35,41 +28,24 @@ public class PicturePanel extends JPanel {
         super.paintComponent(g);
         if (image != null) {
             g.drawImage(image, 3, 3, this.getWidth() - 6, this.getHeight() - 6, null);
+        } else {
+            //The placeholder is a grey square
+            g.setColor(Color.LIGHT_GRAY);
+            g.fillRect(3, 3, this.getWidth() - 6, this.getHeight() - 6);
+            g.setColor(Color.DARK_GRAY);
+            g.drawString(missing ? "Missing" : "Loading", 8, this.getHeight() / 2);
         }
     }
 
     /**
-     * Adds the picture from the path <code>path</code> to the instance of the
-     * class.
-     *
-     * @param path Path to image.
-     */
-    public void addPicture(String path) {
-
-        try {
-            image = ImageIO.read(new File(path));
-            repaint();
-        } catch (IOException ex) {
-            System.err.println("Error in loading image, path may be incorrect!");
-        }
-
-    }
-
-    /**
-     * Sets the order to <code>x</code>
-     *
-     * @param x New index
-     */
-    public void setOrder(int x) {
-        order = x;
-    }
-
-    /**
-     * Get the current order of the class instance.
+     * Sets the thumbnail to <code>thumbnail</code>. If it is null, the
+     * placeholder is painted instead.
      *
-     * @return the current order.
+     * @param thumbnail Thumbnail of the picture, or null if it is not loaded
+     * @param isMissing If the picture could not be loaded
      */
-    public int getOrder() {
-        return order;
+    public void setPicture(BufferedImage thumbnail, boolean isMissing) {
+        image = thumbnail;
+        missing = isMissing;
     }
 }
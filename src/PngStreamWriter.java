@@ -0,0 +1,169 @@
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+
+/**
+ * This class writes a PNG picture one row at a time, so the whole picture
+ * never needs to be in memory. The rows are written as 8 bit RGB with the
+ * "sub" filter, compressed and cut in IDAT chunks as the compressed bytes
+ * come out.
+ *
+ * @author Alexandru Amarandei Stanescu aas1u16
+ */
+public class PngStreamWriter {
+
+    private static final byte[] SIGNATURE = {(byte) 137, 80, 78, 71, 13, 10, 26, 10};
+    //Size of the IDAT chunks
+    private static final int CHUNK_SIZE = 64 * 1024;
+    private static final int FILTER_SUB = 1;
+
+    private final OutputStream out;
+    private final int width, height;
+    private final Deflater deflater = new Deflater(Deflater.DEFAULT_COMPRESSION);
+    private final DeflaterOutputStream compressed;
+    //One filtered row, with the filter type first
+    private final byte[] row;
+    private int rowsWritten = 0;
+
+    /**
+     * Starts a picture of <code>width</code> x <code>height</code> in
+     * <code>out</code> by writing the signature and the header.
+     *
+     * @param out Where the picture is written
+     * @param width Width of the picture
+     * @param height Height of the picture
+     * @throws IOException If the picture can't be written
+     */
+    public PngStreamWriter(OutputStream out, int width, int height) throws IOException {
+        if (width <= 0 || height <= 0 || width > (Integer.MAX_VALUE - 1) / 3) {
+            throw new IOException("A PNG can't be " + width + " x " + height);
+        }
+        this.out = out;
+        this.width = width;
+        this.height = height;
+        row = new byte[1 + width * 3];
+        out.write(SIGNATURE);
+        byte[] header = new byte[13];
+        putInt(header, 0, width);
+        putInt(header, 4, height);
+        header[8] = 8; //Bits per sample
+        header[9] = 2; //RGB
+        writeChunk("IHDR", header, 0, header.length);
+        compressed = new DeflaterOutputStream(new ChunkStream(), deflater, CHUNK_SIZE);
+    }
+
+    /**
+     * Writes <code>rows</code> rows from <code>pixels</code>, which holds RGB
+     * pixels with <code>scanline</code> pixels between the start of two rows.
+     *
+     * @param pixels Pixels in RGB, the highest byte is ignored
+     * @param offset Index of the first pixel of the first row
+     * @param scanline Pixels from the start of a row to the start of the next
+     * @param rows Number of rows
+     * @throws IOException If the picture can't be written
+     */
+    public void writeRows(int[] pixels, int offset, int scanline, int rows) throws IOException {
+        if (rowsWritten + rows > height) {
+            throw new IOException("The picture has only " + height + " rows");
+        }
+        row[0] = FILTER_SUB;
+        for (int r = 0; r < rows; r++) {
+            int start = offset + r * scanline;
+            int lastR = 0, lastG = 0, lastB = 0;
+            for (int x = 0, i = 1; x < width; x++, i += 3) {
+                int pixel = pixels[start + x];
+                int red = (pixel >> 16) & 0xFF, green = (pixel >> 8) & 0xFF, blue = pixel & 0xFF;
+                //Every byte is written as the difference from the pixel on its left
+                row[i] = (byte) (red - lastR);
+                row[i + 1] = (byte) (green - lastG);
+                row[i + 2] = (byte) (blue - lastB);
+                lastR = red;
+                lastG = green;
+                lastB = blue;
+            }
+            compressed.write(row);
+        }
+        rowsWritten += rows;
+    }
+
+    /**
+     * Writes the last compressed bytes and the end of the picture. The
+     * output stream is not closed.
+     *
+     * @throws IOException If not all the rows were written or the picture
+     * can't be written
+     */
+    public void finish() throws IOException {
+        if (rowsWritten != height) {
+            throw new IOException("Only " + rowsWritten + " of " + height + " rows were written");
+        }
+        compressed.finish();
+        deflater.end();
+        writeChunk("IEND", new byte[0], 0, 0);
+        out.flush();
+    }
+
+    /**
+     * Writes a chunk of type <code>type</code> with <code>length</code> bytes
+     * of <code>data</code>.
+     *
+     * @param type Type of the chunk
+     * @param data Bytes of the chunk
+     * @param offset First byte
+     * @param length Number of bytes
+     * @throws IOException If the picture can't be written
+     */
+    private void writeChunk(String type, byte[] data, int offset, int length) throws IOException {
+        byte[] typeBytes = type.getBytes(StandardCharsets.US_ASCII);
+        byte[] number = new byte[4];
+        putInt(number, 0, length);
+        out.write(number);
+        out.write(typeBytes);
+        out.write(data, offset, length);
+        CRC32 crc = new CRC32();
+        crc.update(typeBytes);
+        crc.update(data, offset, length);
+        putInt(number, 0, (int) crc.getValue());
+        out.write(number);
+    }
+
+    /**
+     * Puts <code>value</code> in 4 bytes of <code>bytes</code>, the highest
+     * byte first.
+     *
+     * @param bytes Where to put the value
+     * @param offset First byte
+     * @param value Value to put
+     */
+    private static void putInt(byte[] bytes, int offset, int value) {
+        bytes[offset] = (byte) (value >>> 24);
+        bytes[offset + 1] = (byte) (value >>> 16);
+        bytes[offset + 2] = (byte) (value >>> 8);
+        bytes[offset + 3] = (byte) value;
+    }
+
+    /**
+     * Writes the compressed bytes it is given as IDAT chunks.
+     */
+    private class ChunkStream extends OutputStream {
+
+        @Override
+        public void write(int b) throws IOException {
+            write(new byte[]{(byte) b}, 0, 1);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            while (len > 0) {
+                int length = Math.min(len, CHUNK_SIZE);
+                writeChunk("IDAT", b, off, length);
+                off += length;
+                len -= length;
+            }
+        }
+    }
+}
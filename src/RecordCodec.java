@@ -0,0 +1,151 @@
+
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+
+/**
+ * This class encodes a saved drawing into the bytes of an archive record and
+ * back. Small numbers are written as varints (7 bits per byte) and every point
+ * is written as the difference from the previous one, so a point usually
+ * takes two bytes instead of two decimal numbers.
+ *
+ * The layout of a record is: size, sectors, flags (1 for bars, 2 for
+ * reflect), background, start, number of starts, the starts, number of
+ * strokes, number of points, then for every stroke its colour, line size,
+ * window width, window height and number of points, and at last the points.
+ *
+ * @author Alexandru Amarandei Stanescu aas1u16
+ */
+public class RecordCodec {
+
+    private static final int FLAG_BARS = 1, FLAG_REFLECT = 2;
+
+    /**
+     * Writes <code>record</code> to <code>out</code>.
+     *
+     * @param record Record to write
+     * @param out Where to write
+     * @throws IOException If the file can't be written
+     */
+    public static void write(DoilyRecord record, RecordWriter out) throws IOException {
+        StrokeStore strokes = record.getStrokes();
+        int strokeCount = record.getStrokeCount();
+        out.writeVarInt(record.getSize());
+        out.writeVarInt(record.getSectors());
+        out.writeByte((record.getBars() ? FLAG_BARS : 0) | (record.getReflect() ? FLAG_REFLECT : 0));
+        out.writeInt(record.getBackground());
+        out.writeVarInt(record.getStart());
+        out.writeVarInt(record.getStarts().size());
+        for (int start : record.getStarts()) {
+            out.writeVarInt(start);
+        }
+        out.writeVarInt(strokeCount);
+        out.writeVarInt(strokes.getStrokeOffset(strokeCount));
+        for (int i = 0; i < strokeCount; i++) {
+            out.writeInt(strokes.getColor(i));
+            out.writeVarInt(strokes.getSize(i));
+            out.writeVarInt(strokes.getWindowWidth(i));
+            out.writeVarInt(strokes.getWindowHeight(i));
+            out.writeVarInt(strokes.getStrokePointCount(i));
+        }
+        //The points are saved as whole pixels, like in the text saves
+        float[] xs = strokes.getXs(), ys = strokes.getYs();
+        int lastX = 0, lastY = 0;
+        for (int j = 0; j < strokes.getStrokeOffset(strokeCount); j++) {
+            int x = (int) xs[j], y = (int) ys[j];
+            out.writeVarInts(zigZag(x - lastX), zigZag(y - lastY));
+            lastX = x;
+            lastY = y;
+        }
+    }
+
+    /**
+     * Reads a record called <code>name</code> from <code>buffer</code>.
+     *
+     * @param buffer Bytes of the record
+     * @param name Path of the picture, without the extension
+     * @return The record
+     * @throws IOException If the record is broken
+     */
+    public static DoilyRecord read(ByteBuffer buffer, String name) throws IOException {
+        try {
+            int size = readVarInt(buffer);
+            int sectors = readVarInt(buffer);
+            int flags = buffer.get();
+            int background = buffer.getInt();
+            int start = readVarInt(buffer);
+            int numberOfStarts = readVarInt(buffer);
+            ArrayList<Integer> starts = new ArrayList<>(numberOfStarts);
+            for (int i = 0; i < numberOfStarts; i++) {
+                starts.add(readVarInt(buffer));
+            }
+            int strokeCount = readVarInt(buffer);
+            int pointCount = readVarInt(buffer);
+            //The store is created with the exact size, so it never grows
+            StrokeStore strokes = new StrokeStore(strokeCount, pointCount);
+            //The strokes come before the points, so we keep them until their points are read
+            int[] colors = new int[strokeCount], lineSizes = new int[strokeCount];
+            int[] windowSizes = new int[strokeCount * 2], pointsPerStroke = new int[strokeCount];
+            for (int i = 0; i < strokeCount; i++) {
+                colors[i] = buffer.getInt();
+                lineSizes[i] = readVarInt(buffer);
+                windowSizes[i * 2] = readVarInt(buffer);
+                windowSizes[i * 2 + 1] = readVarInt(buffer);
+                pointsPerStroke[i] = readVarInt(buffer);
+            }
+            int x = 0, y = 0;
+            for (int i = 0; i < strokeCount; i++) {
+                strokes.addStroke(colors[i], lineSizes[i], windowSizes[i * 2], windowSizes[i * 2 + 1]);
+                for (int j = 0; j < pointsPerStroke[i]; j++) {
+                    x += unZigZag(readVarInt(buffer));
+                    y += unZigZag(readVarInt(buffer));
+                    strokes.addPoint(x, y);
+                }
+            }
+            return new DoilyRecord(name, size, sectors, (flags & FLAG_BARS) != 0, (flags & FLAG_REFLECT) != 0,
+                    background, start, starts, strokes, strokeCount);
+        } catch (BufferUnderflowException e) {
+            throw new IOException("The record of " + name + " is broken", e);
+        }
+    }
+
+    /**
+     * Reads a value written by {@link RecordWriter#writeVarInt(int)}.
+     *
+     * @param buffer Where to read from
+     * @return The value
+     * @throws IOException If the value is too long
+     */
+    public static int readVarInt(ByteBuffer buffer) throws IOException {
+        int value = 0;
+        for (int shift = 0; shift < 35; shift += 7) {
+            byte b = buffer.get();
+            value |= (b & 0x7F) << shift;
+            if (b >= 0) {
+                return value;
+            }
+        }
+        throw new IOException("Varint is too long");
+    }
+
+    /**
+     * Moves the sign to the lowest bit, so small negative numbers stay small.
+     *
+     * @param value Value to encode
+     * @return Encoded value
+     */
+    private static int zigZag(int value) {
+        return (value << 1) ^ (value >> 31);
+    }
+
+    /**
+     * Reverses {@link #zigZag(int)}.
+     *
+     * @param value Encoded value
+     * @return Value
+     */
+    private static int unZigZag(int value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+}
@@ -0,0 +1,146 @@
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * This class writes the numbers of a record straight into a reusable byte
+ * buffer, which is written to the file every time it fills up. This way a
+ * record of any size is written with the same small amount of memory and
+ * without creating a String or an array for every number.
+ *
+ * @author Alexandru Amarandei Stanescu aas1u16
+ */
+public class RecordWriter {
+
+    //Longest varint, in bytes
+    private static final int MAX_VARINT = 5;
+
+    private final ByteBuffer buffer;
+    private FileChannel channel;
+    //Where the next chunk goes in the file
+    private long position;
+    //Bytes written since start
+    private long written;
+
+    /**
+     * Creates a writer with a buffer of <code>bufferSize</code> bytes.
+     *
+     * @param bufferSize Size of the chunks written to the file
+     */
+    public RecordWriter(int bufferSize) {
+        buffer = ByteBuffer.allocateDirect(Math.max(bufferSize, 2 * MAX_VARINT));
+    }
+
+    /**
+     * Starts writing in <code>channel</code> at <code>position</code>.
+     *
+     * @param channel File to write to
+     * @param position Position of the first byte
+     */
+    public void start(FileChannel channel, long position) {
+        this.channel = channel;
+        this.position = position;
+        written = 0;
+        buffer.clear();
+    }
+
+    /**
+     * Writes the lowest 8 bits of <code>value</code>.
+     *
+     * @param value Value to write
+     * @throws IOException If the file can't be written
+     */
+    public void writeByte(int value) throws IOException {
+        ensureRemaining(1);
+        buffer.put((byte) value);
+    }
+
+    /**
+     * Writes <code>value</code> in 4 bytes.
+     *
+     * @param value Value to write
+     * @throws IOException If the file can't be written
+     */
+    public void writeInt(int value) throws IOException {
+        ensureRemaining(4);
+        buffer.putInt(value);
+    }
+
+    /**
+     * Writes <code>value</code>, which must not be negative, 7 bits at a time.
+     *
+     * @param value Value to write
+     * @throws IOException If the file can't be written
+     */
+    public void writeVarInt(int value) throws IOException {
+        ensureRemaining(MAX_VARINT);
+        putVarInt(value);
+    }
+
+    /**
+     * Writes two varints, like a point.
+     *
+     * @param first First value
+     * @param second Second value
+     * @throws IOException If the file can't be written
+     */
+    public void writeVarInts(int first, int second) throws IOException {
+        ensureRemaining(2 * MAX_VARINT);
+        putVarInt(first);
+        putVarInt(second);
+    }
+
+    /**
+     * Writes what is left in the buffer to the file.
+     *
+     * @return Number of bytes written since start
+     * @throws IOException If the file can't be written
+     */
+    public long finish() throws IOException {
+        flush();
+        channel = null;
+        return written;
+    }
+
+    /**
+     * Puts <code>value</code> in the buffer, which has enough space.
+     *
+     * @param value Value to put
+     */
+    private void putVarInt(int value) {
+        while ((value & ~0x7F) != 0) {
+            buffer.put((byte) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        buffer.put((byte) value);
+    }
+
+    /**
+     * Writes the buffer to the file if it has less than <code>bytes</code>
+     * bytes left.
+     *
+     * @param bytes Bytes needed
+     * @throws IOException If the file can't be written
+     */
+    private void ensureRemaining(int bytes) throws IOException {
+        if (buffer.remaining() < bytes) {
+            flush();
+        }
+    }
+
+    /**
+     * Writes the buffer to the file and empties it.
+     *
+     * @throws IOException If the file can't be written
+     */
+    private void flush() throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            int count = channel.write(buffer, position);
+            position += count;
+            written += count;
+        }
+        buffer.clear();
+    }
+}
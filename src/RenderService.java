@@ -0,0 +1,79 @@
+
+import java.awt.image.BufferedImage;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Consumer;
+import javax.swing.SwingUtilities;
+
+/**
+ * This class paints doilies on a background thread, so the Swing thread is
+ * free while a big drawing is painted again (after a resize, a load or a
+ * change of the settings). Only the last requested image matters: a new
+ * request cancels the one that is being painted. The finished image is given
+ * back on the Swing thread.
+ *
+ * All the methods should be called from the Swing thread.
+ *
+ * @author Alexandru Amarandei Stanescu aas1u16
+ */
+public class RenderService {
+
+    private final ExecutorService executor = Executors.newSingleThreadExecutor((Runnable r) -> {
+        Thread thread = new Thread(r, "Doily renderer");
+        thread.setDaemon(true);
+        return thread;
+    });
+    //Used only by the background thread, paints the bands of the image on all the cores
+    private final ParallelDoilyRenderer renderer = new ParallelDoilyRenderer();
+    private Future<?> pending = null;
+    //Number of the last request, older images are thrown away
+    private long generation = 0;
+
+    /**
+     * Paints <code>scene</code> in an image of <code>width</code> x
+     * <code>height</code> on the background thread and then gives it to
+     * <code>onDone</code> on the Swing thread. The request that was being
+     * painted before is cancelled.
+     *
+     * @param scene Scene to paint
+     * @param width Width of the image
+     * @param height Height of the image
+     * @param onDone Receives the image when it is finished
+     */
+    public void render(DoilyScene scene, int width, int height, Consumer<BufferedImage> onDone) {
+        cancel();
+        long request = generation;
+        pending = executor.submit(() -> {
+            BufferedImage image = renderer.render(scene, width, height);
+            if (image != null) {
+                SwingUtilities.invokeLater(() -> {
+                    if (request == generation) {
+                        pending = null;
+                        onDone.accept(image);
+                    }
+                });
+            }
+        });
+    }
+
+    /**
+     * Cancels the image that is being painted, if there is one.
+     */
+    public void cancel() {
+        if (pending != null) {
+            pending.cancel(true);
+            pending = null;
+        }
+        generation++;
+    }
+
+    /**
+     * Checks if an image is being painted.
+     *
+     * @return true if yes, false if no
+     */
+    public boolean isRendering() {
+        return pending != null;
+    }
+}
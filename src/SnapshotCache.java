@@ -0,0 +1,255 @@
+
+import java.awt.image.BufferedImage;
+import java.awt.image.WritableRaster;
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * This class keeps compressed copies (checkpoints) of the offscreen image. A
+ * checkpoint is taken every <code>interval</code> steps, so when the image
+ * has to be painted again (for example after an undo) only the steps after the
+ * nearest checkpoint are painted. The checkpoints are kept until they use more
+ * memory than the budget, then the least recently used ones are removed.
+ * The image is compressed and decompressed a band of rows at a time, so the
+ * buffers used for it stay small whatever the size of the image.
+ *
+ * All the checkpoints belong to the settings (sectors, reflect, background,
+ * size of the panel) they were painted with, so they are dropped when these
+ * change.
+ *
+ * @author Alexandru Amarandei Stanescu aas1u16
+ */
+public class SnapshotCache {
+
+    //Size of the buffers for a band of rows
+    private static final int BAND_BYTES = 256 * 1024;
+
+    private final int interval;
+    private final long memoryBudget;
+    //Checkpoints by start and step, in the order they were last used
+    private final LinkedHashMap<Long, byte[]> snapshots = new LinkedHashMap<>(16, 0.75f, true);
+    private long usedMemory = 0;
+    //Settings of the current checkpoints
+    private String settings = "";
+    //Buffers for a band of rows, reused between compressions
+    private int[] pixels = new int[0];
+    private byte[] bytes = new byte[0], compressed = new byte[64 * 1024];
+    private final Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+    private final Inflater inflater = new Inflater();
+
+    /**
+     * Creates a cache that takes a checkpoint every <code>interval</code>
+     * steps and uses at most <code>memoryBudget</code> bytes.
+     *
+     * @param interval Steps between checkpoints
+     * @param memoryBudget Maximum memory for the compressed checkpoints
+     */
+    public SnapshotCache(int interval, long memoryBudget) {
+        this.interval = interval;
+        this.memoryBudget = memoryBudget;
+    }
+
+    /**
+     * Returns the number of steps between checkpoints.
+     *
+     * @return interval
+     */
+    public int getInterval() {
+        return interval;
+    }
+
+    /**
+     * Sets the settings the next checkpoints are painted with. If they are
+     * different from the current ones, all checkpoints are removed.
+     *
+     * @param newSettings Description of the settings
+     */
+    public void setSettings(String newSettings) {
+        if (!settings.equals(newSettings)) {
+            clear();
+            settings = newSettings;
+        }
+    }
+
+    /**
+     * Checks if there is a checkpoint for the image from <code>start</code>
+     * to <code>step</code>.
+     *
+     * @param start Start step of the image
+     * @param step Last step of the image (exclusive)
+     * @return true if there is one
+     */
+    public boolean contains(int start, int step) {
+        return snapshots.containsKey(key(start, step));
+    }
+
+    /**
+     * Saves a compressed copy of <code>image</code>, which contains the steps
+     * from <code>start</code> to <code>step</code>.
+     *
+     * @param start Start step of the image
+     * @param step Last step of the image (exclusive)
+     * @param image Image to save
+     */
+    public void put(int start, int step, BufferedImage image) {
+        WritableRaster raster = image.getRaster();
+        int width = raster.getWidth(), height = raster.getHeight();
+        int rows = bandRows(width);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        deflater.reset();
+        for (int y = 0; y < height; y += rows) {
+            int bandHeight = Math.min(rows, height - y), bandBytes = width * bandHeight * 4;
+            //First we copy the pixels of the band as bytes
+            raster.getDataElements(0, y, width, bandHeight, pixels);
+            ByteBuffer.wrap(bytes).asIntBuffer().put(pixels, 0, width * bandHeight);
+            //Then we compress them, the deflater has to take the whole band before the buffer is used again
+            boolean last = y + bandHeight == height;
+            deflater.setInput(bytes, 0, bandBytes);
+            if (last) {
+                deflater.finish();
+            }
+            while (last ? !deflater.finished() : !deflater.needsInput()) {
+                int length = deflater.deflate(compressed);
+                out.write(compressed, 0, length);
+            }
+        }
+        byte[] snapshot = out.toByteArray();
+        int length = snapshot.length;
+        //At last we add it and remove the old ones if there is not enough memory
+        byte[] old = snapshots.put(key(start, step), snapshot);
+        if (old != null) {
+            usedMemory -= old.length;
+        }
+        usedMemory += length;
+        Iterator<Map.Entry<Long, byte[]>> iterator = snapshots.entrySet().iterator();
+        while (usedMemory > memoryBudget && iterator.hasNext()) {
+            usedMemory -= iterator.next().getValue().length;
+            iterator.remove();
+        }
+    }
+
+    /**
+     * Copies the nearest checkpoint of the image from <code>start</code>
+     * to <code>step</code> into <code>image</code>. The nearest checkpoint is
+     * the one with the same start and the biggest step that is not after
+     * <code>step</code>.
+     *
+     * @param start Start step of the image
+     * @param step Last step of the image (exclusive)
+     * @param image Image to copy into
+     * @return The step of the checkpoint or -1 if there is none
+     */
+    public int restoreNearest(int start, int step, BufferedImage image) {
+        for (int checkpoint = step - step % interval; checkpoint > start; checkpoint -= interval) {
+            byte[] snapshot = snapshots.get(key(start, checkpoint));
+            if (snapshot != null && restore(snapshot, image)) {
+                return checkpoint;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Removes the checkpoints that contain steps after <code>step</code>.
+     * Should be called when these steps are replaced.
+     *
+     * @param step Last step that is still valid (exclusive)
+     */
+    public void removeAfter(int step) {
+        Iterator<Map.Entry<Long, byte[]>> iterator = snapshots.entrySet().iterator();
+        while (iterator.hasNext()) {
+            Map.Entry<Long, byte[]> entry = iterator.next();
+            if ((int) (long) entry.getKey() > step) {
+                usedMemory -= entry.getValue().length;
+                iterator.remove();
+            }
+        }
+    }
+
+    /**
+     * Removes all checkpoints.
+     */
+    public void clear() {
+        snapshots.clear();
+        usedMemory = 0;
+    }
+
+    /**
+     * Returns the memory used by the checkpoints in bytes.
+     *
+     * @return used memory
+     */
+    public long getUsedMemory() {
+        return usedMemory;
+    }
+
+    /**
+     * Decompresses <code>snapshot</code> into <code>image</code>.
+     *
+     * @param snapshot Compressed pixels
+     * @param image Image to copy into
+     * @return true if it succeeded, false if the snapshot doesn't fit the image
+     */
+    private boolean restore(byte[] snapshot, BufferedImage image) {
+        WritableRaster raster = image.getRaster();
+        int width = raster.getWidth(), height = raster.getHeight();
+        int rows = bandRows(width);
+        inflater.reset();
+        inflater.setInput(snapshot);
+        for (int y = 0; y < height; y += rows) {
+            int bandHeight = Math.min(rows, height - y), bandBytes = width * bandHeight * 4;
+            try {
+                int length = 0;
+                while (length < bandBytes && !inflater.finished()) {
+                    int read = inflater.inflate(bytes, length, bandBytes - length);
+                    if (read == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                        break;
+                    }
+                    length += read;
+                }
+                if (length != bandBytes) {
+                    return false;
+                }
+            } catch (DataFormatException ex) {
+                return false;
+            }
+            ByteBuffer.wrap(bytes).asIntBuffer().get(pixels, 0, width * bandHeight);
+            raster.setDataElements(0, y, width, bandHeight, pixels);
+        }
+        return true;
+    }
+
+    /**
+     * Returns how many rows of <code>width</code> pixels are compressed at a
+     * time, and makes the buffers big enough for them.
+     *
+     * @param width Width of the image
+     * @return Rows in a band
+     */
+    private int bandRows(int width) {
+        int rows = Math.max(1, BAND_BYTES / (4 * width));
+        if (pixels.length != rows * width) {
+            pixels = new int[rows * width];
+            bytes = new byte[rows * width * 4];
+        }
+        return rows;
+    }
+
+    /**
+     * Returns the key of the checkpoint from <code>start</code> to
+     * <code>step</code>.
+     *
+     * @param start Start step
+     * @param step Last step (exclusive)
+     * @return The key
+     */
+    private static long key(int start, int step) {
+        return ((long) start << 32) | (step & 0xffffffffL);
+    }
+}
@@ -0,0 +1,181 @@
+
+import java.util.Arrays;
+
+/**
+ * This class keeps simpler versions of a stroke, for painting it smaller
+ * than it was drawn. Level 0 is the stroke itself and is not kept here. Every
+ * next level is made from the one before with the Ramer-Douglas-Peucker
+ * algorithm and twice the tolerance, so level <code>l</code> strays less
+ * than 2<sup>l-1</sup> pixels, of the window the stroke was drawn in, from
+ * the stroke. A stroke painted at a scale of 1/4 can use level 2 and still be
+ * within half a pixel of the full stroke. The levels never change once they
+ * are made, so they can be read by many threads.
+ *
+ * @author Alexandru Amarandei Stanescu aas1u16
+ */
+public final class StrokeLevels {
+
+    //Most levels kept, the last one strays less than 128 pixels
+    private static final int MAX_LEVELS = 8;
+    //Largest error allowed in the painted image, in its pixels
+    private static final double MAX_ERROR = 0.5;
+    //Points simplified together, the ends of every span are kept so a long jittery stroke costs linear time
+    private static final int MAX_SPAN = 32;
+
+    //Points of the levels from 1, level l is at index l - 1
+    private final float[][] xs, ys;
+
+    /**
+     * Creates the levels of the points from <code>from</code> to
+     * <code>to</code> of <code>sourceXs</code> and <code>sourceYs</code>.
+     * Levels are made until one has only its first and last points.
+     *
+     * @param sourceXs X coordinates
+     * @param sourceYs Y coordinates
+     * @param from First point of the stroke
+     * @param to Last point of the stroke (exclusive)
+     */
+    public StrokeLevels(float[] sourceXs, float[] sourceYs, int from, int to) {
+        float[][] levelXs = new float[MAX_LEVELS][], levelYs = new float[MAX_LEVELS][];
+        float[] previousXs = sourceXs, previousYs = sourceYs;
+        int previousFrom = from, previousTo = to;
+        int levels = 0;
+        double tolerance = MAX_ERROR;
+        while (levels < MAX_LEVELS && previousTo - previousFrom > 2) {
+            boolean[] keep = simplify(previousXs, previousYs, previousFrom, previousTo, tolerance);
+            int kept = 0;
+            for (boolean k : keep) {
+                if (k) {
+                    kept++;
+                }
+            }
+            float[] nextXs = new float[kept], nextYs = new float[kept];
+            for (int i = 0, j = 0; i < keep.length; i++) {
+                if (keep[i]) {
+                    nextXs[j] = previousXs[previousFrom + i];
+                    nextYs[j] = previousYs[previousFrom + i];
+                    j++;
+                }
+            }
+            levelXs[levels] = nextXs;
+            levelYs[levels] = nextYs;
+            levels++;
+            previousXs = nextXs;
+            previousYs = nextYs;
+            previousFrom = 0;
+            previousTo = kept;
+            tolerance *= 2;
+        }
+        xs = new float[levels][];
+        ys = new float[levels][];
+        System.arraycopy(levelXs, 0, xs, 0, levels);
+        System.arraycopy(levelYs, 0, ys, 0, levels);
+    }
+
+    /**
+     * Marks the points from <code>from</code> to <code>to</code> that the
+     * Ramer-Douglas-Peucker algorithm keeps for <code>tolerance</code>, in
+     * spans of at most {@link #MAX_SPAN} points. A stack is used instead of
+     * recursion, so long strokes don't overflow it.
+     *
+     * @param xs X coordinates
+     * @param ys Y coordinates
+     * @param from First point
+     * @param to Last point (exclusive)
+     * @param tolerance Largest distance of a dropped point from the line
+     * @return For every point, if it is kept
+     */
+    private static boolean[] simplify(float[] xs, float[] ys, int from, int to, double tolerance) {
+        int count = to - from;
+        boolean[] keep = new boolean[count];
+        keep[0] = true;
+        int[] stack = new int[64];
+        int top = 0;
+        for (int end = count - 1; end > 0; end -= MAX_SPAN) {
+            if (top + 2 > stack.length) {
+                stack = Arrays.copyOf(stack, stack.length * 2);
+            }
+            keep[end] = true;
+            stack[top++] = Math.max(0, end - MAX_SPAN);
+            stack[top++] = end;
+        }
+        double toleranceSquared = tolerance * tolerance;
+        while (top > 0) {
+            int last = stack[--top], first = stack[--top];
+            double ax = xs[from + first], ay = ys[from + first];
+            double dx = xs[from + last] - ax, dy = ys[from + last] - ay;
+            double lengthSquared = dx * dx + dy * dy;
+            //Find the point furthest from the segment between first and last
+            int furthest = -1;
+            double furthestDistance = toleranceSquared;
+            for (int i = first + 1; i < last; i++) {
+                double px = xs[from + i] - ax, py = ys[from + i] - ay;
+                double t = lengthSquared == 0 ? 0 : Math.max(0, Math.min(1, (px * dx + py * dy) / lengthSquared));
+                double ex = px - t * dx, ey = py - t * dy;
+                double distance = ex * ex + ey * ey;
+                if (distance > furthestDistance) {
+                    furthest = i;
+                    furthestDistance = distance;
+                }
+            }
+            //If it is too far it is kept and both halves are checked
+            if (furthest >= 0) {
+                keep[furthest] = true;
+                if (top + 4 > stack.length) {
+                    stack = Arrays.copyOf(stack, stack.length * 2);
+                }
+                stack[top++] = first;
+                stack[top++] = furthest;
+                stack[top++] = furthest;
+                stack[top++] = last;
+            }
+        }
+        return keep;
+    }
+
+    /**
+     * Returns the highest level that can be painted at <code>scale</code>
+     * staying within half a pixel of the stroke. It may be higher than the
+     * number of levels of a stroke.
+     *
+     * @param scale Painted size divided by the size the stroke was drawn at
+     * @return The level, 0 if the stroke itself must be painted
+     */
+    public static int levelFor(double scale) {
+        int level = 0;
+        //Level l strays less than 2^(l-1) pixels, which become 2^(l-1) * scale
+        while (level < MAX_LEVELS && Math.scalb(1d, level) * scale <= MAX_ERROR) {
+            level++;
+        }
+        return level;
+    }
+
+    /**
+     * Returns the number of levels, not counting level 0.
+     *
+     * @return Number of levels
+     */
+    public int getLevelCount() {
+        return xs.length;
+    }
+
+    /**
+     * Returns the x coordinates of level <code>level</code>.
+     *
+     * @param level Level from 1 to the number of levels
+     * @return X coordinates, the length of the array is the number of points
+     */
+    public float[] getXs(int level) {
+        return xs[level - 1];
+    }
+
+    /**
+     * Returns the y coordinates of level <code>level</code>.
+     *
+     * @param level Level from 1 to the number of levels
+     * @return Y coordinates, the length of the array is the number of points
+     */
+    public float[] getYs(int level) {
+        return ys[level - 1];
+    }
+}
@@ -0,0 +1,95 @@
+
+import java.awt.Graphics2D;
+import java.awt.geom.Path2D;
+
+/**
+ * This class draws strokes that were already scaled and rotated by a
+ * SymmetryEngine. Instead of drawing a line for every two consecutive points,
+ * every sector of the stroke (and its reflection) is added to one path which
+ * is drawn with a single call. This way the joins between the segments are
+ * drawn correctly too.
+ *
+ * @author Alexandru Amarandei Stanescu aas1u16
+ */
+public class StrokeRenderer {
+
+    //The path is reused for every sector so its arrays are not allocated again
+    private final Path2D.Double path = new Path2D.Double(Path2D.WIND_NON_ZERO, 256);
+
+    /**
+     * Draws the stroke from the last transform of <code>symmetry</code> on
+     * <code>g2</code> with the current colour and stroke of <code>g2</code>.
+     * If the stroke has just one point, we paint an oval of size
+     * <code>size</code> in every sector. If <code>reflect</code> is true, the
+     * stroke is also drawn reflected in an image of height
+     * <code>height</code>.
+     *
+     * @param g2 Graphics object to paint on.
+     * @param symmetry Engine that holds the transformed stroke.
+     * @param size Line size of the stroke.
+     * @param reflect If we need to reflect.
+     * @param height Height of the image.
+     */
+    public void drawStroke(Graphics2D g2, SymmetryEngine symmetry, int size, boolean reflect, int height) {
+        drawStroke(g2, symmetry, size, reflect, height, 0, symmetry.getNumberOfSectors());
+    }
+
+    /**
+     * Draws only the sectors from <code>fromSector</code> to
+     * <code>toSector</code> of the stroke from the last transform of
+     * <code>symmetry</code>, which must have transformed these sectors, like
+     * {@link #drawStroke(Graphics2D, SymmetryEngine, int, boolean, int)}.
+     *
+     * @param g2 Graphics object to paint on.
+     * @param symmetry Engine that holds the transformed stroke.
+     * @param size Line size of the stroke.
+     * @param reflect If we need to reflect.
+     * @param height Height of the image.
+     * @param fromSector First sector
+     * @param toSector Last sector (exclusive)
+     */
+    public void drawStroke(Graphics2D g2, SymmetryEngine symmetry, int size, boolean reflect, int height,
+            int fromSector, int toSector) {
+        int count = symmetry.getCount(), firstSector = symmetry.getFirstSector();
+        double[] xs = symmetry.getXs(), ys = symmetry.getYs();
+        //If we find one point the we print an oval
+        if (count == 1) {
+            for (int k = fromSector - firstSector; k < toSector - firstSector; k++) {
+                g2.fillOval((int) (xs[k] - size / 2), (int) (ys[k] - size / 2), size, size);
+                if (reflect) {
+                    g2.fillOval((int) (xs[k] - size / 2), (int) ((height - ys[k] - size / 2)), size, size);
+                }
+            }
+            return;
+        }
+        //Otherwise we draw one path for every sector and one for its reflection
+        for (int k = fromSector; k < toSector; k++) {
+            int start = (k - firstSector) * count;
+            drawPath(g2, xs, ys, start, start + count, false, height);
+            if (reflect) {
+                drawPath(g2, xs, ys, start, start + count, true, height);
+            }
+        }
+    }
+
+    /**
+     * Draws the points from <code>from</code> to <code>to</code> as one path.
+     *
+     * @param g2 Graphics object to paint on.
+     * @param xs X coordinates
+     * @param ys Y coordinates
+     * @param from First point
+     * @param to Last point (exclusive)
+     * @param reflected If the points are reflected vertically.
+     * @param height Height of the image.
+     */
+    private void drawPath(Graphics2D g2, double[] xs, double[] ys, int from, int to, boolean reflected, int height) {
+        //The coordinates are cut to whole pixels, like the lines drawn while dragging
+        path.reset();
+        path.moveTo((int) xs[from], (int) (reflected ? height - ys[from] : ys[from]));
+        for (int j = from + 1; j < to; j++) {
+            path.lineTo((int) xs[j], (int) (reflected ? height - ys[j] : ys[j]));
+        }
+        g2.draw(path);
+    }
+}
@@ -0,0 +1,156 @@
+
+import java.util.Arrays;
+
+/**
+ * This class decides, while a stroke is drawn, which mouse points need to be
+ * stored. A slow stroke gives many points on almost the same line, and every
+ * stored point is painted again in every sector on every redraw. The last
+ * stored point is kept movable: when a new mouse point arrives, the last
+ * point is moved to it if every mouse point since the point before it is
+ * still within the tolerance of the new line, else the new point is added.
+ * So the stored stroke never strays from the mouse path by more than the
+ * tolerance, in the pixels of the window it is drawn in.
+ *
+ * @author Alexandru Amarandei Stanescu aas1u16
+ */
+public class StrokeSimplifier {
+
+    //Most mouse points replaced by one line, so a point costs a bounded time
+    private static final int MAX_SKIPPED = 256;
+
+    private float tolerance;
+    //Second to last stored point, the start of the line that can still move
+    private float anchorX, anchorY;
+    private boolean hasAnchor;
+    //Mouse points after the anchor, the last one is the last stored point
+    private float[] skippedXs = new float[16], skippedYs = new float[16];
+    private int skipped;
+
+    /**
+     * Creates a simplifier that lets the stroke stray at most
+     * <code>tolerance</code> pixels from the mouse path.
+     *
+     * @param tolerance Tolerance in pixels, 0 removes only points exactly on
+     * the line
+     */
+    public StrokeSimplifier(float tolerance) {
+        setTolerance(tolerance);
+    }
+
+    /**
+     * Starts a new stroke at (<code>x</code>, <code>y</code>), which is
+     * always stored.
+     *
+     * @param x X of the first point
+     * @param y Y of the first point
+     */
+    public void start(float x, float y) {
+        hasAnchor = false;
+        skipped = 0;
+        addSkipped(x, y);
+    }
+
+    /**
+     * Takes the mouse point (<code>x</code>, <code>y</code>) and tells if it
+     * must be added to the stroke or can replace the last stored point.
+     *
+     * @param x X of the point
+     * @param y Y of the point
+     * @return true if the point must be added, false if it replaces the last
+     * point
+     */
+    public boolean add(float x, float y) {
+        float lastX = skippedXs[skipped - 1], lastY = skippedYs[skipped - 1];
+        if (!hasAnchor) {
+            //A stroke of one point grows as soon as the mouse moves
+            if (x == lastX && y == lastY) {
+                return false;
+            }
+            newLine(lastX, lastY, x, y);
+            return true;
+        }
+        if (skipped < MAX_SKIPPED && allWithinTolerance(x, y)) {
+            addSkipped(x, y);
+            return false;
+        }
+        newLine(lastX, lastY, x, y);
+        return true;
+    }
+
+    /**
+     * Checks if every mouse point since the anchor is within the tolerance of
+     * the line from the anchor to (<code>x</code>, <code>y</code>).
+     *
+     * @param x X of the end of the line
+     * @param y Y of the end of the line
+     * @return true if yes, false if no
+     */
+    private boolean allWithinTolerance(float x, float y) {
+        double dx = x - anchorX, dy = y - anchorY;
+        double lengthSquared = dx * dx + dy * dy;
+        double toleranceSquared = (double) tolerance * tolerance;
+        for (int i = 0; i < skipped; i++) {
+            double px = skippedXs[i] - anchorX, py = skippedYs[i] - anchorY;
+            //The nearest point of the segment, not of the whole line, so going back is noticed
+            double t = lengthSquared == 0 ? 0 : Math.max(0, Math.min(1, (px * dx + py * dy) / lengthSquared));
+            double ex = px - t * dx, ey = py - t * dy;
+            if (ex * ex + ey * ey > toleranceSquared) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Starts a new movable line from the last stored point to the added one.
+     *
+     * @param fromX X of the last stored point
+     * @param fromY Y of the last stored point
+     * @param x X of the added point
+     * @param y Y of the added point
+     */
+    private void newLine(float fromX, float fromY, float x, float y) {
+        anchorX = fromX;
+        anchorY = fromY;
+        hasAnchor = true;
+        skipped = 0;
+        addSkipped(x, y);
+    }
+
+    /**
+     * Remembers the mouse point (<code>x</code>, <code>y</code>).
+     *
+     * @param x X of the point
+     * @param y Y of the point
+     */
+    private void addSkipped(float x, float y) {
+        if (skipped == skippedXs.length) {
+            skippedXs = Arrays.copyOf(skippedXs, skipped * 2);
+            skippedYs = Arrays.copyOf(skippedYs, skipped * 2);
+        }
+        skippedXs[skipped] = x;
+        skippedYs[skipped] = y;
+        skipped++;
+    }
+
+    /**
+     * Returns the tolerance.
+     *
+     * @return Tolerance in pixels
+     */
+    public float getTolerance() {
+        return tolerance;
+    }
+
+    /**
+     * Sets the tolerance, used from the next mouse point.
+     *
+     * @param tolerance Tolerance in pixels
+     */
+    public void setTolerance(float tolerance) {
+        if (!(tolerance >= 0)) {
+            throw new IllegalArgumentException("Bad tolerance " + tolerance);
+        }
+        this.tolerance = tolerance;
+    }
+}
@@ -0,0 +1,305 @@
+
+import java.util.Arrays;
+
+/**
+ * This class stores the strokes drawn on the panel. Instead of keeping an
+ * object for every mouse point, the coordinates of all the strokes are kept
+ * one after another in two growable float arrays. The information of every
+ * stroke (where its points start, colour, line size and the window size it
+ * was drawn in) is packed in a single int array. The simpler levels of a
+ * stroke, for painting it small, are made the first time they are needed
+ * and kept until the stroke changes.
+ *
+ * @author Alexandru Amarandei Stanescu aas1u16
+ */
+public class StrokeStore {
+
+    //Number of ints used by every stroke in the metadata array
+    private static final int META_STRIDE = 5;
+    //Positions of the fields inside a stroke's metadata
+    private static final int OFFSET = 0, COLOR = 1, SIZE = 2, WINDOW_WIDTH = 3, WINDOW_HEIGHT = 4;
+
+    //Coordinates of all the points, stroke after stroke
+    private float[] xs, ys;
+    //Packed metadata of the strokes
+    private int[] meta;
+    private int pointCount = 0, strokeCount = 0;
+    //Levels of detail of the strokes, null until they are needed
+    private StrokeLevels[] levels;
+
+    /**
+     * Creates an empty store with a small starting capacity.
+     */
+    public StrokeStore() {
+        this(16, 1024);
+    }
+
+    /**
+     * Creates an empty store that can hold <code>strokes</code> strokes and
+     * <code>points</code> points before growing.
+     *
+     * @param strokes Starting capacity for strokes
+     * @param points Starting capacity for points
+     */
+    public StrokeStore(int strokes, int points) {
+        xs = new float[Math.max(points, 1)];
+        ys = new float[Math.max(points, 1)];
+        meta = new int[Math.max(strokes, 1) * META_STRIDE];
+        levels = new StrokeLevels[Math.max(strokes, 1)];
+    }
+
+    /**
+     * Starts a new stroke with colour <code>rgb</code>, line size
+     * <code>size</code> drawn in a window of <code>windowWidth</code> x
+     * <code>windowHeight</code>. The next points added will belong to it.
+     *
+     * @param rgb Colour of the stroke
+     * @param size Line size of the stroke
+     * @param windowWidth Width of the window when the stroke was drawn
+     * @param windowHeight Height of the window when the stroke was drawn
+     * @return The index of the new stroke
+     */
+    public int addStroke(int rgb, int size, int windowWidth, int windowHeight) {
+        if ((strokeCount + 1) * META_STRIDE > meta.length) {
+            meta = Arrays.copyOf(meta, meta.length * 2);
+            levels = Arrays.copyOf(levels, meta.length / META_STRIDE);
+        }
+        levels[strokeCount] = null;
+        int base = strokeCount * META_STRIDE;
+        meta[base + OFFSET] = pointCount;
+        meta[base + COLOR] = rgb;
+        meta[base + SIZE] = size;
+        meta[base + WINDOW_WIDTH] = windowWidth;
+        meta[base + WINDOW_HEIGHT] = windowHeight;
+        return strokeCount++;
+    }
+
+    /**
+     * Adds the point (<code>x</code>, <code>y</code>) to the last stroke.
+     *
+     * @param x X coordinate
+     * @param y Y coordinate
+     */
+    public void addPoint(float x, float y) {
+        if (pointCount == xs.length) {
+            xs = Arrays.copyOf(xs, xs.length * 2);
+            ys = Arrays.copyOf(ys, ys.length * 2);
+        }
+        xs[pointCount] = x;
+        ys[pointCount] = y;
+        pointCount++;
+        if (strokeCount > 0) {
+            levels[strokeCount - 1] = null;
+        }
+    }
+
+    /**
+     * Moves the last point of the last stroke to (<code>x</code>,
+     * <code>y</code>).
+     *
+     * @param x X coordinate
+     * @param y Y coordinate
+     */
+    public void moveLastPoint(float x, float y) {
+        xs[pointCount - 1] = x;
+        ys[pointCount - 1] = y;
+        if (strokeCount > 0) {
+            levels[strokeCount - 1] = null;
+        }
+    }
+
+    /**
+     * Removes all the strokes starting with the stroke <code>count</code>. The
+     * memory is kept so the next strokes don't need to allocate it again.
+     *
+     * @param count Number of strokes to keep
+     */
+    public void truncate(int count) {
+        if (count < strokeCount) {
+            count = Math.max(count, 0);
+            pointCount = meta[count * META_STRIDE + OFFSET];
+            Arrays.fill(levels, count, strokeCount, null);
+            strokeCount = count;
+        }
+    }
+
+    /**
+     * Returns a new store with a copy of the strokes from <code>from</code>
+     * to <code>to</code>. The first copied stroke has the index 0 in the new
+     * store.
+     *
+     * @param from First stroke
+     * @param to Last stroke (exclusive)
+     * @return The new store
+     */
+    public StrokeStore copy(int from, int to) {
+        int firstPoint = getStrokeOffset(from), lastPoint = getStrokeOffset(to);
+        StrokeStore copy = new StrokeStore(to - from, lastPoint - firstPoint);
+        System.arraycopy(xs, firstPoint, copy.xs, 0, lastPoint - firstPoint);
+        System.arraycopy(ys, firstPoint, copy.ys, 0, lastPoint - firstPoint);
+        System.arraycopy(meta, from * META_STRIDE, copy.meta, 0, (to - from) * META_STRIDE);
+        for (int i = 0; i < to - from; i++) {
+            copy.meta[i * META_STRIDE + OFFSET] -= firstPoint;
+        }
+        //The levels don't change, so the copy can share them
+        System.arraycopy(levels, from, copy.levels, 0, to - from);
+        copy.strokeCount = to - from;
+        copy.pointCount = lastPoint - firstPoint;
+        return copy;
+    }
+
+    /**
+     * Removes all strokes and points.
+     */
+    public void clear() {
+        truncate(0);
+    }
+
+    /**
+     * Returns the number of strokes.
+     *
+     * @return number of strokes.
+     */
+    public int getStrokeCount() {
+        return strokeCount;
+    }
+
+    /**
+     * Returns the number of points of all strokes.
+     *
+     * @return number of points.
+     */
+    public int getPointCount() {
+        return pointCount;
+    }
+
+    /**
+     * Returns the position in the coordinate arrays of the first point of
+     * stroke <code>stroke</code>. For <code>stroke</code> equal to the number
+     * of strokes this is the end of the last stroke.
+     *
+     * @param stroke Index of stroke
+     * @return Position of the first point
+     */
+    public int getStrokeOffset(int stroke) {
+        if (stroke == strokeCount) {
+            return pointCount;
+        }
+        return meta[stroke * META_STRIDE + OFFSET];
+    }
+
+    /**
+     * Returns the number of points in the stroke <code>stroke</code>.
+     *
+     * @param stroke Index of stroke
+     * @return Number of points
+     */
+    public int getStrokePointCount(int stroke) {
+        return getStrokeOffset(stroke + 1) - getStrokeOffset(stroke);
+    }
+
+    /**
+     * Returns the x coordinate of the point <code>position</code> of stroke
+     * <code>stroke</code>.
+     *
+     * @param stroke Index of stroke
+     * @param position Index of point in the stroke
+     * @return X coordinate
+     */
+    public float getX(int stroke, int position) {
+        return xs[getStrokeOffset(stroke) + position];
+    }
+
+    /**
+     * Returns the y coordinate of the point <code>position</code> of stroke
+     * <code>stroke</code>.
+     *
+     * @param stroke Index of stroke
+     * @param position Index of point in the stroke
+     * @return Y coordinate
+     */
+    public float getY(int stroke, int position) {
+        return ys[getStrokeOffset(stroke) + position];
+    }
+
+    /**
+     * Returns the array with the x coordinates of all points. Only the first
+     * <code>getPointCount()</code> values are valid and the array is replaced
+     * when the store grows, so it should not be kept.
+     *
+     * @return X coordinates
+     */
+    public float[] getXs() {
+        return xs;
+    }
+
+    /**
+     * Returns the array with the y coordinates of all points. Only the first
+     * <code>getPointCount()</code> values are valid and the array is replaced
+     * when the store grows, so it should not be kept.
+     *
+     * @return Y coordinates
+     */
+    public float[] getYs() {
+        return ys;
+    }
+
+    /**
+     * Returns the levels of detail of the stroke <code>stroke</code>, making
+     * them if they were not made yet. Threads that only read the store can
+     * call this at the same time, at worst the levels are made twice.
+     *
+     * @param stroke Index of stroke
+     * @return The levels
+     */
+    public StrokeLevels getLevels(int stroke) {
+        StrokeLevels strokeLevels = levels[stroke];
+        if (strokeLevels == null) {
+            strokeLevels = new StrokeLevels(xs, ys, getStrokeOffset(stroke), getStrokeOffset(stroke + 1));
+            levels[stroke] = strokeLevels;
+        }
+        return strokeLevels;
+    }
+
+    /**
+     * Returns the colour of stroke <code>stroke</code> in RGB.
+     *
+     * @param stroke Index of stroke
+     * @return Colour in RGB
+     */
+    public int getColor(int stroke) {
+        return meta[stroke * META_STRIDE + COLOR];
+    }
+
+    /**
+     * Returns the line size of stroke <code>stroke</code>.
+     *
+     * @param stroke Index of stroke
+     * @return Line size
+     */
+    public int getSize(int stroke) {
+        return meta[stroke * META_STRIDE + SIZE];
+    }
+
+    /**
+     * Returns the width of the window in which stroke <code>stroke</code> was
+     * drawn.
+     *
+     * @param stroke Index of stroke
+     * @return Window width
+     */
+    public int getWindowWidth(int stroke) {
+        return meta[stroke * META_STRIDE + WINDOW_WIDTH];
+    }
+
+    /**
+     * Returns the height of the window in which stroke <code>stroke</code> was
+     * drawn.
+     *
+     * @param stroke Index of stroke
+     * @return Window height
+     */
+    public int getWindowHeight(int stroke) {
+        return meta[stroke * META_STRIDE + WINDOW_HEIGHT];
+    }
+}
@@ -0,0 +1,235 @@
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * This class writes a doily as an SVG picture. Every stroke is scaled to the
+ * size of the picture like in the drawing panel and written once as a path,
+ * with its colour and line size. The copies for the other sectors and the
+ * reflection are written as uses of that path, rotated around the centre or
+ * flipped, so the file grows with the number of points and not with the
+ * number of sectors. The document is written straight into the file while
+ * the strokes are read, it is never kept in memory.
+ *
+ * @author Alexandru Amarandei Stanescu aas1u16
+ */
+public class SvgExporter {
+
+    //Characters kept before they are written
+    private static final int BUFFER_SIZE = 8 * 1024;
+
+    private final DoilyRenderer renderer;
+    private final StringBuilder text = new StringBuilder(BUFFER_SIZE * 2);
+
+    /**
+     * Creates an exporter that scales the strokes with <code>renderer</code>.
+     *
+     * @param renderer Renderer whose symmetry engine is used
+     */
+    public SvgExporter(DoilyRenderer renderer) {
+        this.renderer = renderer;
+    }
+
+    /**
+     * Writes <code>scene</code> as an SVG picture of <code>width</code> x
+     * <code>height</code> in <code>file</code>.
+     *
+     * @param scene Scene to write
+     * @param width Width of the picture
+     * @param height Height of the picture
+     * @param file Where to write the picture
+     * @throws IOException If the file can't be written or the thread was
+     * interrupted
+     */
+    public void export(DoilyScene scene, int width, int height, File file) throws IOException {
+        try (Writer out = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(file),
+                StandardCharsets.UTF_8), 64 * 1024)) {
+            export(scene, width, height, out);
+        }
+    }
+
+    /**
+     * Writes <code>scene</code> as an SVG picture of <code>width</code> x
+     * <code>height</code> in <code>out</code>. The writer is not closed.
+     *
+     * @param scene Scene to write
+     * @param width Width of the picture
+     * @param height Height of the picture
+     * @param out Where to write the picture
+     * @throws IOException If the picture can't be written or the thread was
+     * interrupted
+     */
+    public void export(DoilyScene scene, int width, int height, Writer out) throws IOException {
+        text.setLength(0);
+        int sectors = scene.getSectors();
+        int centerX = width / 2, centerY = height / 2;
+        text.append("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n")
+                .append("<svg xmlns=\"http://www.w3.org/2000/svg\" xmlns:xlink=\"http://www.w3.org/1999/xlink\"")
+                .append(" width=\"").append(width).append("\" height=\"").append(height)
+                .append("\" viewBox=\"0 0 ").append(width).append(' ').append(height).append("\">\n");
+        //First the background and the bars
+        text.append("<rect width=\"100%\" height=\"100%\" fill=\"").append(color(scene.getBackground())).append("\"/>\n");
+        if (scene.getBars()) {
+            double r = Math.min(width / 2, height / 2);
+            text.append("<g stroke=\"#808080\" stroke-width=\"1\">\n");
+            for (int k = 0; k < sectors; k++) {
+                double angle = 2 * Math.PI * k / sectors;
+                text.append("<line x1=\"").append(centerX).append("\" y1=\"").append(centerY).append("\" x2=\"");
+                appendNumber(centerX + r * Math.cos(angle));
+                text.append("\" y2=\"");
+                appendNumber(centerY + r * Math.sin(angle));
+                text.append("\"/>\n");
+            }
+            text.append("</g>\n");
+        }
+        //Only the points are needed, the rotation is done by the uses
+        SymmetryEngine symmetry = renderer.getSymmetry();
+        symmetry.setNumberOfSectors(1);
+        StrokeStore strokes = scene.getStrokes();
+        for (int i = 0; i < strokes.getStrokeCount(); i++) {
+            if (Thread.currentThread().isInterrupted()) {
+                throw new InterruptedIOException("The export was interrupted");
+            }
+            int numberOfPoints = strokes.getStrokePointCount(i);
+            if (numberOfPoints == 0) {
+                continue;
+            }
+            renderer.transformStroke(strokes, i, 0, numberOfPoints, width, height);
+            double[] xs = symmetry.getXs(), ys = symmetry.getYs();
+            int rgb = strokes.getColor(i), size = strokes.getSize(i);
+            String id = "s" + i;
+            text.append("<g");
+            appendPaint(numberOfPoints == 1 ? "fill" : "stroke", rgb);
+            if (numberOfPoints == 1) {
+                //One point is painted as a dot of the size of the line
+                text.append(">\n<circle id=\"").append(id).append("\" cx=\"");
+                appendNumber(xs[0]);
+                text.append("\" cy=\"");
+                appendNumber(ys[0]);
+                text.append("\" r=\"");
+                appendNumber(size / 2d);
+                text.append("\"/>\n");
+            } else {
+                text.append(" fill=\"none\" stroke-width=\"").append(size)
+                        .append("\" stroke-linecap=\"round\" stroke-linejoin=\"round\">\n<path id=\"")
+                        .append(id).append("\" d=\"M");
+                for (int j = 0; j < numberOfPoints; j++) {
+                    if (j > 0) {
+                        text.append(j == 1 ? " L" : " ");
+                    }
+                    appendNumber(xs[j]);
+                    text.append(' ');
+                    appendNumber(ys[j]);
+                    flushIfFull(out);
+                }
+                text.append("\"/>\n");
+            }
+            //Then a copy for every other sector and for every reflection
+            for (int k = 0; k < sectors; k++) {
+                if (k > 0) {
+                    text.append("<use xlink:href=\"#").append(id).append("\" transform=\"");
+                    appendRotation(k, sectors, centerX, centerY);
+                    text.append("\"/>\n");
+                }
+                if (scene.getReflect()) {
+                    //The rotated copy is flipped upside down
+                    text.append("<use xlink:href=\"#").append(id).append("\" transform=\"matrix(1 0 0 -1 0 ")
+                            .append(height).append(')');
+                    if (k > 0) {
+                        text.append(' ');
+                        appendRotation(k, sectors, centerX, centerY);
+                    }
+                    text.append("\"/>\n");
+                }
+            }
+            text.append("</g>\n");
+            flushIfFull(out);
+        }
+        symmetry.trim();
+        text.append("</svg>\n");
+        out.write(text.toString());
+        text.setLength(0);
+        out.flush();
+    }
+
+    /**
+     * Appends the rotation of sector <code>k</code> around the centre.
+     *
+     * @param k Sector
+     * @param sectors Number of sectors
+     * @param centerX X of the rotation centre
+     * @param centerY Y of the rotation centre
+     */
+    private void appendRotation(int k, int sectors, int centerX, int centerY) {
+        //The angle keeps all its decimals, an error is multiplied by the distance from the centre
+        text.append("rotate(").append(360d * k / sectors);
+        text.append(' ').append(centerX).append(' ').append(centerY).append(')');
+    }
+
+    /**
+     * Appends the attribute <code>attribute</code> with the colour
+     * <code>argb</code> and its opacity if it is not opaque.
+     *
+     * @param attribute fill or stroke
+     * @param argb Colour with alpha
+     */
+    private void appendPaint(String attribute, int argb) {
+        text.append(' ').append(attribute).append("=\"").append(color(argb)).append('"');
+        int alpha = argb >>> 24;
+        if (alpha != 255) {
+            text.append(' ').append(attribute).append("-opacity=\"");
+            appendNumber(alpha / 255d);
+            text.append('"');
+        }
+    }
+
+    /**
+     * Appends <code>value</code> with at most two decimals.
+     *
+     * @param value Value to append
+     */
+    private void appendNumber(double value) {
+        long hundredths = Math.round(value * 100);
+        if (hundredths < 0) {
+            text.append('-');
+            hundredths = -hundredths;
+        }
+        text.append(hundredths / 100);
+        int decimals = (int) (hundredths % 100);
+        if (decimals != 0) {
+            text.append('.').append(decimals / 10);
+            if (decimals % 10 != 0) {
+                text.append(decimals % 10);
+            }
+        }
+    }
+
+    /**
+     * Writes the text to <code>out</code> if there is enough of it.
+     *
+     * @param out Where to write
+     * @throws IOException If the picture can't be written
+     */
+    private void flushIfFull(Writer out) throws IOException {
+        if (text.length() >= BUFFER_SIZE) {
+            out.write(text.toString());
+            text.setLength(0);
+        }
+    }
+
+    /**
+     * Returns <code>rgb</code> as an SVG colour, without the alpha.
+     *
+     * @param rgb Colour
+     * @return Colour as #rrggbb
+     */
+    private static String color(int rgb) {
+        return String.format("#%06x", rgb & 0xFFFFFF);
+    }
+}
@@ -0,0 +1,241 @@
+
+import java.util.Arrays;
+
+/**
+ * This class does the symmetry math for the doily. It keeps a table with the
+ * sine and cosine of the angle of every sector, which is recalculated only
+ * when the number of sectors changes. Whole strokes are scaled and rotated in
+ * one go into arrays that are reused between calls, so no objects are created
+ * while drawing. Arrays grown for a very long stroke are given back by
+ * <code>trim</code> and by the next call with a normal stroke, so a renderer
+ * doesn't keep them for as long as it lives.
+ *
+ * @author Alexandru Amarandei Stanescu aas1u16
+ */
+public class SymmetryEngine {
+
+    //Initial size of the buffers
+    private static final int INITIAL_CAPACITY = 256;
+    //Biggest size of the buffers kept between calls, 8 MB each
+    private static final int MAX_KEPT_CAPACITY = 1 << 20;
+
+    private int numberOfSectors = 0;
+    //Cosine and sine of the angle of every sector
+    private double[] cos = new double[0], sin = new double[0];
+    //Transformed points, the point j of sector k is at (k - firstSector) * count + j
+    private double[] rotatedX = new double[INITIAL_CAPACITY], rotatedY = new double[INITIAL_CAPACITY];
+    //Number of points transformed for every sector in the last call
+    private int count = 0;
+    //First sector transformed in the last call
+    private int firstSector = 0;
+
+    /**
+     * Creates an engine for <code>sectors</code> sectors.
+     *
+     * @param sectors Number of sectors
+     */
+    public SymmetryEngine(int sectors) {
+        setNumberOfSectors(sectors);
+    }
+
+    /**
+     * Sets the number of sectors to <code>sectors</code>. The tables are
+     * recalculated only if the number is different from the current one.
+     *
+     * @param sectors New number of sectors
+     */
+    public void setNumberOfSectors(int sectors) {
+        if (sectors == numberOfSectors) {
+            return;
+        }
+        numberOfSectors = sectors;
+        cos = new double[sectors];
+        sin = new double[sectors];
+        for (int k = 0; k < sectors; k++) {
+            double angle = 2 * Math.PI * k / sectors;
+            cos[k] = Math.cos(angle);
+            sin[k] = Math.sin(angle);
+        }
+    }
+
+    /**
+     * Returns the number of sectors.
+     *
+     * @return number of sectors
+     */
+    public int getNumberOfSectors() {
+        return numberOfSectors;
+    }
+
+    /**
+     * Returns the cosine of the angle of sector <code>k</code>.
+     *
+     * @param k Sector
+     * @return Cosine of the angle
+     */
+    public double getCos(int k) {
+        return cos[k];
+    }
+
+    /**
+     * Returns the sine of the angle of sector <code>k</code>.
+     *
+     * @param k Sector
+     * @return Sine of the angle
+     */
+    public double getSin(int k) {
+        return sin[k];
+    }
+
+    /**
+     * Transforms the points from <code>from</code> to <code>to</code> of
+     * <code>xs</code> and <code>ys</code>. Every point is first scaled from
+     * the window it was drawn in, x' = (x - shiftX) * ratio + offsetX (the
+     * same for y), and then rotated around (<code>centerX</code>,
+     * <code>centerY</code>) for every sector. The results can be read with
+     * <code>getX</code> and <code>getY</code> until the next call.
+     *
+     * @param xs X coordinates
+     * @param ys Y coordinates
+     * @param from First point
+     * @param to Last point (exclusive)
+     * @param shiftX Shift of x before scaling
+     * @param shiftY Shift of y before scaling
+     * @param ratio Ratio between the new and the old window
+     * @param offsetX Shift of x after scaling
+     * @param offsetY Shift of y after scaling
+     * @param centerX X of the rotation centre
+     * @param centerY Y of the rotation centre
+     */
+    public void transform(float[] xs, float[] ys, int from, int to, double shiftX, double shiftY,
+            double ratio, double offsetX, double offsetY, double centerX, double centerY) {
+        transform(xs, ys, from, to, shiftX, shiftY, ratio, offsetX, offsetY, centerX, centerY, 0, numberOfSectors);
+    }
+
+    /**
+     * Transforms the points like
+     * {@link #transform(float[], float[], int, int, double, double, double, double, double, double, double)},
+     * but rotates them only for the sectors from <code>fromSector</code> to
+     * <code>toSector</code>. The buffers hold only these sectors, so painting
+     * a band of sectors costs as much as its share of the stroke.
+     *
+     * @param xs X coordinates
+     * @param ys Y coordinates
+     * @param from First point
+     * @param to Last point (exclusive)
+     * @param shiftX Shift of x before scaling
+     * @param shiftY Shift of y before scaling
+     * @param ratio Ratio between the new and the old window
+     * @param offsetX Shift of x after scaling
+     * @param offsetY Shift of y after scaling
+     * @param centerX X of the rotation centre
+     * @param centerY Y of the rotation centre
+     * @param fromSector First sector
+     * @param toSector Last sector (exclusive)
+     */
+    public void transform(float[] xs, float[] ys, int from, int to, double shiftX, double shiftY,
+            double ratio, double offsetX, double offsetY, double centerX, double centerY,
+            int fromSector, int toSector) {
+        count = to - from;
+        firstSector = fromSector;
+        int sectors = toSector - fromSector;
+        int needed = count * sectors;
+        if (needed > rotatedX.length) {
+            int capacity = Math.max(needed, rotatedX.length * 2);
+            rotatedX = Arrays.copyOf(rotatedX, capacity);
+            rotatedY = Arrays.copyOf(rotatedY, capacity);
+        } else if (rotatedX.length > MAX_KEPT_CAPACITY && needed <= MAX_KEPT_CAPACITY) {
+            //The buffers grew for a longer stroke and are not needed anymore
+            int capacity = Math.max(needed, INITIAL_CAPACITY);
+            rotatedX = new double[capacity];
+            rotatedY = new double[capacity];
+        }
+        for (int j = 0; j < count; j++) {
+            //First we scale the point to the new window
+            double dx = (xs[from + j] - shiftX) * ratio + offsetX - centerX;
+            double dy = (ys[from + j] - shiftY) * ratio + offsetY - centerY;
+            //Then we rotate it for every sector
+            for (int k = fromSector, position = j; k < toSector; k++, position += count) {
+                rotatedX[position] = centerX + dx * cos[k] - dy * sin[k];
+                rotatedY[position] = centerY + dx * sin[k] + dy * cos[k];
+            }
+        }
+    }
+
+    /**
+     * Gives back the buffers if they grew bigger than what is kept between
+     * calls. The results of the last transform can't be read anymore after
+     * this. Renderers call it after they finish painting, so the buffers of
+     * a long stroke are not kept while the renderer is not used.
+     */
+    public void trim() {
+        if (rotatedX.length > MAX_KEPT_CAPACITY) {
+            rotatedX = new double[INITIAL_CAPACITY];
+            rotatedY = new double[INITIAL_CAPACITY];
+            count = 0;
+            firstSector = 0;
+        }
+    }
+
+    /**
+     * Returns the number of points per sector from the last transform.
+     *
+     * @return number of points
+     */
+    public int getCount() {
+        return count;
+    }
+
+    /**
+     * Returns the first sector from the last transform.
+     *
+     * @return first sector
+     */
+    public int getFirstSector() {
+        return firstSector;
+    }
+
+    /**
+     * Returns the x of the transformed point <code>j</code> in sector
+     * <code>k</code>.
+     *
+     * @param k Sector
+     * @param j Point
+     * @return X coordinate
+     */
+    public double getX(int k, int j) {
+        return rotatedX[(k - firstSector) * count + j];
+    }
+
+    /**
+     * Returns the y of the transformed point <code>j</code> in sector
+     * <code>k</code>.
+     *
+     * @param k Sector
+     * @param j Point
+     * @return Y coordinate
+     */
+    public double getY(int k, int j) {
+        return rotatedY[(k - firstSector) * count + j];
+    }
+
+    /**
+     * Returns the array with the x of all transformed points, the point j of
+     * sector k being at (k - getFirstSector()) * getCount() + j.
+     *
+     * @return X coordinates
+     */
+    public double[] getXs() {
+        return rotatedX;
+    }
+
+    /**
+     * Returns the array with the y of all transformed points, the point j of
+     * sector k being at (k - getFirstSector()) * getCount() + j.
+     *
+     * @return Y coordinates
+     */
+    public double[] getYs() {
+        return rotatedY;
+    }
+}
@@ -0,0 +1,143 @@
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+
+/**
+ * This class moves the drawings from the old text save file to the binary
+ * archive. The text file has, for every drawing, a line with the picture path,
+ * a line with the single values (size, sectors, bars, reflect, step, start,
+ * background), the number of strokes, a line with the colours, one with the
+ * line sizes, one with the window sizes, a line of points for every stroke and
+ * at last a line with the starts. The text file is left as it is.
+ *
+ * @author Alexandru Amarandei Stanescu aas1u16
+ */
+public class TextSaveMigrator {
+
+    /**
+     * Moves the drawings from <code>textFile</code> to a new archive
+     * <code>archiveFile</code>, if the archive doesn't exist yet. The archive
+     * is first written with another name, so a broken migration is not taken
+     * for a finished one.
+     *
+     * @param textFile Old save file
+     * @param archiveFile File of the archive
+     * @return true if the drawings were moved, false if there was nothing to do
+     * @throws IOException If the text file can't be read or is broken
+     */
+    public static boolean migrateOnce(File textFile, File archiveFile) throws IOException {
+        if (archiveFile.exists() || !textFile.exists()) {
+            return false;
+        }
+        File tempFile = new File(archiveFile.getPath() + ".migrating");
+        Files.deleteIfExists(tempFile.toPath());
+        migrate(textFile, new DoilyArchive(tempFile));
+        Files.move(tempFile.toPath(), archiveFile.toPath());
+        return true;
+    }
+
+    /**
+     * Reads every drawing from <code>textFile</code> and appends it to
+     * <code>archive</code>.
+     *
+     * @param textFile Old save file
+     * @param archive Archive to add the drawings to
+     * @return Number of drawings moved
+     * @throws IOException If the text file can't be read or is broken
+     */
+    public static int migrate(File textFile, DoilyArchive archive) throws IOException {
+        int migrated = 0;
+        try (BufferedReader reader = new BufferedReader(new FileReader(textFile))) {
+            String name;
+            while ((name = reader.readLine()) != null) {
+                archive.append(readRecord(name, reader));
+                migrated++;
+            }
+        } catch (NumberFormatException e) {
+            throw new IOException("Broken number in the save file", e);
+        }
+        return migrated;
+    }
+
+    /**
+     * Reads the drawing called <code>name</code>, whose path line was already
+     * read from <code>reader</code>.
+     *
+     * @param name Picture path
+     * @param reader Reader positioned after the path line
+     * @return The record
+     * @throws IOException If the drawing is broken
+     */
+    private static DoilyRecord readRecord(String name, BufferedReader reader) throws IOException {
+        //First the singular fields
+        int[] singles = readInts(reader);
+        if (singles.length < 7) {
+            throw new IOException("Broken save of " + name);
+        }
+        int size = singles[0], sectors = singles[1], bars = singles[2], reflect = singles[3];
+        int step = singles[4], start = singles[5], background = singles[6];
+        //Then the number of steps and the arrays of every step
+        int[] count = readInts(reader);
+        if (count.length == 0) {
+            throw new IOException("Broken save of " + name);
+        }
+        int lineSize = count[0];
+        int[] colors = readInts(reader);
+        int[] sizes = readInts(reader);
+        int[] windowSizes = readInts(reader);
+        if (colors.length < lineSize || sizes.length < lineSize || windowSizes.length < lineSize * 2) {
+            throw new IOException("Broken save of " + name);
+        }
+        StrokeStore strokes = new StrokeStore(lineSize, 1024);
+        for (int i = 0; i < lineSize; i++) {
+            strokes.addStroke(colors[i], sizes[i], windowSizes[i * 2], windowSizes[i * 2 + 1]);
+            int[] points = readInts(reader);
+            for (int j = 0; j + 1 < points.length; j += 2) {
+                strokes.addPoint(points[j], points[j + 1]);
+            }
+        }
+        //Finally, the starts. They were written without spaces, so a long line may not fit in a number
+        ArrayList<Integer> starts = new ArrayList<>();
+        try {
+            for (int value : readInts(reader)) {
+                starts.add(value);
+            }
+        } catch (NumberFormatException e) {
+            starts.clear();
+        }
+        //Only the steps that are not undone are kept
+        int strokeCount = Math.max(0, Math.min(step, lineSize));
+        strokes.truncate(strokeCount);
+        return new DoilyRecord(name, size, sectors, bars == 1, reflect == 1, background, start, starts,
+                strokes, strokeCount);
+    }
+
+    /**
+     * Reads a line of whitespace separated numbers.
+     *
+     * @param reader Where to read from
+     * @return The numbers of the line
+     * @throws IOException If the file ended
+     * @throws NumberFormatException If a number is broken
+     */
+    private static int[] readInts(BufferedReader reader) throws IOException {
+        String line = reader.readLine();
+        if (line == null) {
+            throw new IOException("The save file ends too early");
+        }
+        String trimmed = line.trim();
+        if (trimmed.isEmpty()) {
+            return new int[0];
+        }
+        String[] tokens = trimmed.split("\\s+");
+        int[] values = new int[tokens.length];
+        for (int i = 0; i < tokens.length; i++) {
+            values[i] = Integer.parseInt(tokens[i]);
+        }
+        return values;
+    }
+}
@@ -0,0 +1,162 @@
+
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.BooleanSupplier;
+import java.util.function.Consumer;
+import javax.swing.SwingUtilities;
+
+/**
+ * This class makes the thumbnails of the saved drawings on a pool of worker
+ * threads. A thumbnail is painted straight from the strokes of the record in
+ * the archive, at the size of the thumbnail, so no picture file is needed and
+ * the thumbnail is sharp at any size. As the thumbnail is much smaller than
+ * the drawing, the renderer paints the simpler levels of the strokes, so a
+ * big drawing is painted with a small part of its points. The thumbnails are
+ * kept in memory, with the least recently used ones thrown away first.
+ *
+ * @author Alexandru Amarandei Stanescu aas1u16
+ */
+public class ThumbnailLoader {
+
+    private final ExecutorService workers;
+    //Every worker has its own renderer, as they have buffers
+    private final ThreadLocal<DoilyRenderer> renderers = ThreadLocal.withInitial(DoilyRenderer::new);
+    //Thumbnails in memory, in the order they were last used
+    private final Map<String, BufferedImage> memoryCache;
+    //Thumbnails that are waiting for a worker, so they are not painted twice
+    private final Set<String> pending = new HashSet<>();
+
+    /**
+     * Creates a loader that keeps at most <code>memoryEntries</code>
+     * thumbnails in memory.
+     *
+     * @param memoryEntries Number of thumbnails kept in memory
+     */
+    public ThumbnailLoader(int memoryEntries) {
+        memoryCache = new LinkedHashMap<String, BufferedImage>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, BufferedImage> eldest) {
+                return size() > memoryEntries;
+            }
+        };
+        int threads = Math.max(1, Math.min(4, Runtime.getRuntime().availableProcessors()));
+        workers = Executors.newFixedThreadPool(threads, (Runnable r) -> {
+            Thread thread = new Thread(r, "Thumbnail loader");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Paints record <code>n</code> of <code>archive</code> as a thumbnail of
+     * <code>size</code> x <code>size</code> and gives it to
+     * <code>onLoaded</code> on the Swing thread. If the thumbnail is in
+     * memory, it is given right away. The record is only read if
+     * <code>stillWanted</code> is true when a worker gets to it, so the
+     * thumbnails that were scrolled out of sight are skipped.
+     * <code>onLoaded</code> is not called for a skipped thumbnail, and gets
+     * null if the record can't be read. A thumbnail that is already waiting
+     * for a worker is not asked for again.
+     *
+     * @param archive Archive with the drawing
+     * @param n Index of the record
+     * @param size Width and height of the thumbnail
+     * @param stillWanted Checked on the worker thread before the record is read
+     * @param onLoaded Receives the thumbnail
+     */
+    public void load(DoilyArchive archive, int n, int size, BooleanSupplier stillWanted,
+            Consumer<BufferedImage> onLoaded) {
+        //The key stays the same if records before this one are deleted meanwhile
+        String recordKey = archive.getRecordKey(n);
+        String key = recordKey + "|" + size;
+        BufferedImage cached;
+        synchronized (memoryCache) {
+            cached = memoryCache.get(key);
+            if (cached == null && !pending.add(key)) {
+                return;
+            }
+        }
+        if (cached != null) {
+            onLoaded.accept(cached);
+            return;
+        }
+        workers.execute(() -> {
+            if (!stillWanted.getAsBoolean()) {
+                synchronized (memoryCache) {
+                    pending.remove(key);
+                }
+                return;
+            }
+            BufferedImage thumbnail = null;
+            try {
+                DoilyRecord record = archive.read(recordKey);
+                if (record != null) {
+                    thumbnail = paintThumbnail(record, size);
+                }
+            } catch (IOException e) {
+                System.err.println("Error in reading image!");
+            }
+            synchronized (memoryCache) {
+                pending.remove(key);
+                if (thumbnail != null) {
+                    memoryCache.put(key, thumbnail);
+                }
+            }
+            BufferedImage loaded = thumbnail;
+            SwingUtilities.invokeLater(() -> onLoaded.accept(loaded));
+        });
+    }
+
+    /**
+     * Returns the thumbnail of record <code>n</code> of <code>archive</code>
+     * if it is in memory, without painting it.
+     *
+     * @param archive Archive with the drawing
+     * @param n Index of the record
+     * @param size Width and height of the thumbnail
+     * @return The thumbnail, or null if it is not in memory
+     */
+    public BufferedImage getCached(DoilyArchive archive, int n, int size) {
+        String key = archive.getRecordKey(n) + "|" + size;
+        synchronized (memoryCache) {
+            return memoryCache.get(key);
+        }
+    }
+
+    /**
+     * Paints the strokes of <code>record</code> that are not cleared or
+     * undone in an image of <code>size</code> x <code>size</code>. The
+     * drawing is painted for the window of its first stroke and scaled down
+     * by the graphics object, so the lines keep their proportions.
+     *
+     * @param record Saved drawing
+     * @param size Width and height of the thumbnail
+     * @return The thumbnail
+     */
+    private BufferedImage paintThumbnail(DoilyRecord record, int size) {
+        StrokeStore strokes = record.getStrokes();
+        int end = Math.min(record.getStrokeCount(), strokes.getStrokeCount());
+        int start = Math.max(0, Math.min(record.getStart(), end));
+        int canvas = size;
+        if (start < end) {
+            canvas = Math.max(1, Math.min(strokes.getWindowWidth(start), strokes.getWindowHeight(start)));
+        }
+        DoilyScene scene = new DoilyScene(strokes.copy(start, end), start, end, record.getSectors(),
+                record.getReflect(), record.getBars(), record.getBackground(), 0);
+        BufferedImage thumbnail = new BufferedImage(size, size, BufferedImage.TYPE_INT_RGB);
+        Graphics2D g2 = thumbnail.createGraphics();
+        g2.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+        g2.scale(size / (double) canvas, size / (double) canvas);
+        renderers.get().paintScene(g2, scene, canvas, canvas);
+        g2.dispose();
+        return thumbnail;
+    }
+}
@@ -0,0 +1,88 @@
+
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+
+/**
+ * This class writes a doily as a PNG picture of any size. The picture is
+ * painted in bands of rows as wide as the picture: every band is painted by
+ * moving the whole doily up, so the strokes are scaled and rotated for the
+ * full size, like in the drawing panel, and only the rows of the band are
+ * kept. The rows are then compressed into the file and the band is used
+ * again for the next rows, so the memory needed depends on the width of the
+ * picture, not on its height.
+ *
+ * @author Alexandru Amarandei Stanescu aas1u16
+ */
+public class TiledExporter {
+
+    //Number of rows painted at once
+    private static final int BAND_ROWS = 256;
+    //Rows painted above and below a band, Java2D may draw the strokes that cross its edge slightly differently
+    private static final int MARGIN = 16;
+
+    private final DoilyRenderer renderer;
+
+    /**
+     * Creates an exporter that paints with <code>renderer</code>.
+     *
+     * @param renderer Renderer used to paint the bands
+     */
+    public TiledExporter(DoilyRenderer renderer) {
+        this.renderer = renderer;
+    }
+
+    /**
+     * Paints <code>scene</code> as a picture of <code>width</code> x
+     * <code>height</code> and writes it in <code>file</code> as a PNG.
+     *
+     * @param scene Scene to paint
+     * @param width Width of the picture
+     * @param height Height of the picture
+     * @param file Where to write the picture
+     * @throws IOException If the file can't be written or the thread was
+     * interrupted
+     */
+    public void export(DoilyScene scene, int width, int height, File file) throws IOException {
+        try (OutputStream out = new BufferedOutputStream(new FileOutputStream(file), 64 * 1024)) {
+            export(scene, width, height, out);
+        }
+    }
+
+    /**
+     * Paints <code>scene</code> as a picture of <code>width</code> x
+     * <code>height</code> and writes it in <code>out</code> as a PNG. The
+     * stream is not closed.
+     *
+     * @param scene Scene to paint
+     * @param width Width of the picture
+     * @param height Height of the picture
+     * @param out Where to write the picture
+     * @throws IOException If the picture can't be written or the thread was
+     * interrupted
+     */
+    public void export(DoilyScene scene, int width, int height, OutputStream out) throws IOException {
+        PngStreamWriter png = new PngStreamWriter(out, width, height);
+        int bandRows = Math.min(BAND_ROWS, height);
+        BufferedImage band = new BufferedImage(width, bandRows + 2 * MARGIN, BufferedImage.TYPE_INT_RGB);
+        int[] pixels = ((DataBufferInt) band.getRaster().getDataBuffer()).getData();
+        for (int y = 0; y < height; y += bandRows) {
+            Graphics2D g2 = band.createGraphics();
+            //The band shows the rows from y of the whole picture
+            g2.translate(0, MARGIN - y);
+            boolean finished = renderer.paintScene(g2, scene, width, height);
+            g2.dispose();
+            if (!finished) {
+                throw new InterruptedIOException("The export was interrupted");
+            }
+            png.writeRows(pixels, MARGIN * width, width, Math.min(bandRows, height - y));
+        }
+        png.finish();
+    }
+}
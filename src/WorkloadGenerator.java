@@ -0,0 +1,203 @@
+
+import java.awt.Dimension;
+import java.util.Random;
+
+/**
+ * This class makes drawings for measuring the application: spirals, random
+ * walks and dense scribbles, with chosen line sizes, colours and window
+ * sizes. The points are whole numbers inside the window, like the ones a
+ * mouse gives, and the same seed always gives the same drawing, so a
+ * measurement can be repeated.
+ *
+ * @author Alexandru Amarandei Stanescu aas1u16
+ */
+public class WorkloadGenerator {
+
+    /**
+     * The shapes of the strokes.
+     */
+    public enum Pattern {
+        //Spirals that start in the middle of the window
+        SPIRAL,
+        //Short steps in a direction that slowly changes
+        RANDOM_WALK,
+        //Quick back and forth lines in a small area
+        SCRIBBLE
+    }
+
+    private final Random random;
+    private int minSize = 1, maxSize = 10;
+    //No colours means every stroke gets a random one
+    private int[] colors = new int[0];
+    private Dimension[] windows = {new Dimension(800, 600)};
+
+    /**
+     * Creates a generator whose drawings depend only on <code>seed</code> and
+     * the settings.
+     *
+     * @param seed Seed of the random numbers
+     */
+    public WorkloadGenerator(long seed) {
+        random = new Random(seed);
+    }
+
+    /**
+     * Creates <code>strokes</code> strokes of <code>pointsPerStroke</code>
+     * points shaped like <code>pattern</code>.
+     *
+     * @param pattern Shape of the strokes
+     * @param strokes Number of strokes
+     * @param pointsPerStroke Points in every stroke
+     * @return The StrokeStore with the strokes
+     */
+    public StrokeStore generate(Pattern pattern, int strokes, int pointsPerStroke) {
+        StrokeStore store = new StrokeStore(strokes, strokes * pointsPerStroke);
+        for (int i = 0; i < strokes; i++) {
+            Dimension window = windows[random.nextInt(windows.length)];
+            int rgb = colors.length == 0 ? 0xFF000000 | random.nextInt(0x1000000)
+                    : colors[random.nextInt(colors.length)];
+            store.addStroke(rgb, minSize + random.nextInt(maxSize - minSize + 1), window.width, window.height);
+            switch (pattern) {
+                case SPIRAL:
+                    addSpiral(store, pointsPerStroke, window.width, window.height);
+                    break;
+                case RANDOM_WALK:
+                    addRandomWalk(store, pointsPerStroke, window.width, window.height);
+                    break;
+                default:
+                    addScribble(store, pointsPerStroke, window.width, window.height);
+            }
+        }
+        return store;
+    }
+
+    /**
+     * Adds a spiral of 3 to 8 turns that starts near the middle of the
+     * window.
+     *
+     * @param store Where to add the points
+     * @param points Number of points
+     * @param width Width of the window
+     * @param height Height of the window
+     */
+    private void addSpiral(StrokeStore store, int points, int width, int height) {
+        double centerX = width / 4 + random.nextInt(width / 2 + 1);
+        double centerY = height / 4 + random.nextInt(height / 2 + 1);
+        double radius = Math.min(width, height) * (0.1 + 0.15 * random.nextDouble());
+        double turns = 3 + random.nextInt(6);
+        double start = 2 * Math.PI * random.nextDouble();
+        for (int j = 0; j < points; j++) {
+            double t = points == 1 ? 0 : (double) j / (points - 1);
+            double angle = start + 2 * Math.PI * turns * t;
+            addPoint(store, centerX + radius * t * Math.cos(angle), centerY + radius * t * Math.sin(angle),
+                    width, height);
+        }
+    }
+
+    /**
+     * Adds steps of 1 to 8 pixels whose direction slowly changes, like a hand
+     * drawing a line.
+     *
+     * @param store Where to add the points
+     * @param points Number of points
+     * @param width Width of the window
+     * @param height Height of the window
+     */
+    private void addRandomWalk(StrokeStore store, int points, int width, int height) {
+        double x = random.nextInt(width), y = random.nextInt(height);
+        double direction = 2 * Math.PI * random.nextDouble();
+        for (int j = 0; j < points; j++) {
+            addPoint(store, x, y, width, height);
+            direction += random.nextGaussian() * 0.3;
+            double step = 1 + random.nextInt(8);
+            x += step * Math.cos(direction);
+            y += step * Math.sin(direction);
+            //Turn back at the edges instead of sliding along them
+            if (x < 0 || x >= width || y < 0 || y >= height) {
+                direction += Math.PI;
+                x = Math.max(0, Math.min(width - 1, x));
+                y = Math.max(0, Math.min(height - 1, y));
+            }
+        }
+    }
+
+    /**
+     * Adds fast back and forth lines in an area of 20 to 80 pixels that
+     * slowly moves, so the same pixels are painted over many times.
+     *
+     * @param store Where to add the points
+     * @param points Number of points
+     * @param width Width of the window
+     * @param height Height of the window
+     */
+    private void addScribble(StrokeStore store, int points, int width, int height) {
+        double x = random.nextInt(width), y = random.nextInt(height);
+        int area = 20 + random.nextInt(61);
+        int period = 4 + random.nextInt(5);
+        for (int j = 0; j < points; j++) {
+            double phase = 2 * Math.PI * j / period;
+            addPoint(store, x + area / 2 * Math.sin(phase) + random.nextInt(5) - 2,
+                    y + area / 4 * Math.cos(phase * 0.5) + random.nextInt(5) - 2, width, height);
+            x += random.nextInt(5) - 2;
+            y += random.nextInt(5) - 2;
+        }
+    }
+
+    /**
+     * Adds the point rounded and kept inside the window, like a mouse
+     * position.
+     *
+     * @param store Where to add the point
+     * @param x X of the point
+     * @param y Y of the point
+     * @param width Width of the window
+     * @param height Height of the window
+     */
+    private static void addPoint(StrokeStore store, double x, double y, int width, int height) {
+        store.addPoint(Math.max(0, Math.min(width - 1, Math.round(x))),
+                Math.max(0, Math.min(height - 1, Math.round(y))));
+    }
+
+    /**
+     * Sets the line sizes, every stroke gets one between <code>min</code> and
+     * <code>max</code>.
+     *
+     * @param min Smallest line size
+     * @param max Biggest line size
+     */
+    public void setLineSizes(int min, int max) {
+        if (min < 1 || max < min) {
+            throw new IllegalArgumentException("Bad line sizes " + min + " - " + max);
+        }
+        minSize = min;
+        maxSize = max;
+    }
+
+    /**
+     * Sets the colours the strokes are picked from. With no colours every
+     * stroke gets a random one.
+     *
+     * @param rgb Colours with alpha
+     */
+    public void setColors(int... rgb) {
+        colors = rgb.clone();
+    }
+
+    /**
+     * Sets the window sizes the strokes are drawn in, every stroke gets one
+     * of them.
+     *
+     * @param sizes Window sizes
+     */
+    public void setWindowSizes(Dimension... sizes) {
+        if (sizes.length == 0) {
+            throw new IllegalArgumentException("At least one window size is needed");
+        }
+        for (Dimension size : sizes) {
+            if (size.width <= 0 || size.height <= 0) {
+                throw new IllegalArgumentException("Bad window size " + size.width + "x" + size.height);
+            }
+        }
+        windows = sizes.clone();
+    }
+}
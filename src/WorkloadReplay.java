@@ -0,0 +1,261 @@
+
+import java.awt.Color;
+import java.awt.Dimension;
+import java.awt.event.InputEvent;
+import java.awt.event.MouseEvent;
+import java.lang.reflect.InvocationTargetException;
+import javax.swing.SwingUtilities;
+
+/**
+ * This class draws a generated drawing on a drawing panel without a window,
+ * by giving the panel the mouse events a user would: a press, the drags and a
+ * release for every stroke, with the colour, line size and window size of
+ * the stroke. The panel handles them with the same mousePressed, mouseDragged
+ * and mouseReleased it uses for the real mouse, on the event dispatch thread,
+ * and the time of every call is counted in a histogram for each kind of
+ * event. The drawing is drawn once before it is measured, so the measured
+ * code is compiled.
+ *
+ * Usage: java -cp DigitalDoyle.jar WorkloadReplay pattern strokes
+ * pointsPerStroke windows sectors [seed [maxPressP99 maxDragP99
+ * maxReleaseP99]]
+ *
+ * The pattern is SPIRAL, RANDOM_WALK or SCRIBBLE and the windows are sizes
+ * like 800x600, separated by commas. The limits are in microseconds, one for
+ * every kind of event, because a release paints the whole stroke while a
+ * drag paints one segment. If the 99th percentile of an event is over its
+ * limit the program exits with 1, so a build can catch a slower drawing
+ * panel.
+ *
+ * @author Alexandru Amarandei Stanescu aas1u16
+ */
+public class WorkloadReplay {
+
+    /**
+     * Reads the arguments, draws the drawing and prints the latencies.
+     *
+     * @param args pattern, strokes, points per stroke, window sizes, sectors
+     * and optionally the seed and the biggest 99th percentiles allowed for the
+     * press, drag and release
+     */
+    public static void main(String[] args) {
+        //Must be set before any AWT class is used
+        System.setProperty("java.awt.headless", "true");
+        if (args.length != 5 && args.length != 6 && args.length != 9) {
+            System.err.println("Usage: WorkloadReplay SPIRAL|RANDOM_WALK|SCRIBBLE strokes pointsPerStroke"
+                    + " WIDTHxHEIGHT[,WIDTHxHEIGHT...] sectors"
+                    + " [seed [maxPressP99Micros maxDragP99Micros maxReleaseP99Micros]]");
+            System.exit(2);
+        }
+        WorkloadGenerator.Pattern pattern;
+        int strokes, points, sectors;
+        long seed, maxPress, maxDrag, maxRelease;
+        Dimension[] windows;
+        try {
+            pattern = WorkloadGenerator.Pattern.valueOf(args[0].toUpperCase());
+            strokes = Integer.parseInt(args[1]);
+            points = Integer.parseInt(args[2]);
+            windows = parseWindows(args[3]);
+            sectors = Integer.parseInt(args[4]);
+            seed = args.length > 5 ? Long.parseLong(args[5]) : 42;
+            maxPress = args.length > 6 ? Long.parseLong(args[6]) : Long.MAX_VALUE;
+            maxDrag = args.length > 6 ? Long.parseLong(args[7]) : Long.MAX_VALUE;
+            maxRelease = args.length > 6 ? Long.parseLong(args[8]) : Long.MAX_VALUE;
+        } catch (IllegalArgumentException e) {
+            System.err.println("Bad argument: " + e.getMessage());
+            System.exit(2);
+            return;
+        }
+        if (strokes <= 0 || points <= 0 || sectors <= 0) {
+            System.err.println("The strokes, points and sectors must be positive!");
+            System.exit(2);
+        }
+        WorkloadGenerator generator = new WorkloadGenerator(seed);
+        generator.setWindowSizes(windows);
+        StrokeStore workload = generator.generate(pattern, strokes, points);
+        try {
+            //The first drawing only warms up the code
+            new WorkloadReplay(sectors).replay(workload);
+            WorkloadReplay replay = new WorkloadReplay(sectors);
+            replay.replay(workload);
+            System.out.printf("%-8s %9s %9s %9s %9s %9s %9s  (microseconds)%n",
+                    "event", "count", "mean", "p50", "p90", "p99", "max");
+            boolean tooSlow = print("press", replay.getPressed(), maxPress);
+            tooSlow |= print("drag", replay.getDragged(), maxDrag);
+            tooSlow |= print("release", replay.getReleased(), maxRelease);
+            System.out.printf("%d of %d mouse points stored%n", replay.getStoredPoints(), workload.getPointCount());
+            System.exit(tooSlow ? 1 : 0);
+        } catch (InterruptedException | InvocationTargetException e) {
+            System.err.println("Error in drawing the workload: " + e);
+            System.exit(1);
+        }
+    }
+
+    /**
+     * Reads window sizes like 800x600,1024x768.
+     *
+     * @param text Sizes separated by commas
+     * @return The sizes
+     */
+    private static Dimension[] parseWindows(String text) {
+        String[] sizes = text.split(",");
+        Dimension[] windows = new Dimension[sizes.length];
+        for (int i = 0; i < sizes.length; i++) {
+            String[] parts = sizes[i].trim().toLowerCase().split("x");
+            if (parts.length != 2) {
+                throw new IllegalArgumentException("window size " + sizes[i]);
+            }
+            windows[i] = new Dimension(Integer.parseInt(parts[0]), Integer.parseInt(parts[1]));
+            if (windows[i].width <= 0 || windows[i].height <= 0) {
+                throw new IllegalArgumentException("window size " + sizes[i]);
+            }
+        }
+        return windows;
+    }
+
+    /**
+     * Prints a line with the latencies of <code>histogram</code>.
+     *
+     * @param event Name of the event
+     * @param histogram Latencies of the event
+     * @param maxP99 Biggest 99th percentile allowed, in microseconds
+     * @return true if the 99th percentile is over <code>maxP99</code>
+     */
+    private static boolean print(String event, LatencyHistogram histogram, long maxP99) {
+        long p99 = histogram.getPercentile(99) / 1000;
+        System.out.printf("%-8s %9d %9d %9d %9d %9d %9d%s%n", event, histogram.getCount(),
+                histogram.getMean() / 1000, histogram.getPercentile(50) / 1000,
+                histogram.getPercentile(90) / 1000, p99, histogram.getMax() / 1000,
+                p99 > maxP99 ? "  over " + maxP99 : "");
+        return p99 > maxP99;
+    }
+
+    private final DrawingPanel panel;
+    private final LatencyHistogram pressed = new LatencyHistogram();
+    private final LatencyHistogram dragged = new LatencyHistogram();
+    private final LatencyHistogram released = new LatencyHistogram();
+
+    /**
+     * Creates a drawing panel with <code>sectors</code> sectors and the other
+     * settings the application starts with. Like every Swing component, the
+     * panel is created on the event dispatch thread.
+     *
+     * @param sectors Number of sectors
+     * @throws InterruptedException If the thread was interrupted
+     * @throws InvocationTargetException If the panel threw an exception
+     */
+    public WorkloadReplay(int sectors) throws InterruptedException, InvocationTargetException {
+        DrawingPanel[] created = new DrawingPanel[1];
+        SwingUtilities.invokeAndWait(() -> {
+            created[0] = new DrawingPanel();
+            created[0].setMyNumberOfSectors(sectors);
+        });
+        panel = created[0];
+    }
+
+    /**
+     * Draws every stroke of <code>workload</code> on the panel. Every stroke
+     * is drawn in one task on the event dispatch thread, so the tasks the
+     * panel queues, like painting the image again after a resize, run
+     * between the strokes like they would between the user's strokes.
+     *
+     * @param workload Strokes to draw
+     * @throws InterruptedException If the thread was interrupted
+     * @throws InvocationTargetException If the panel threw an exception
+     */
+    public void replay(StrokeStore workload) throws InterruptedException, InvocationTargetException {
+        for (int i = 0; i < workload.getStrokeCount(); i++) {
+            int stroke = i;
+            SwingUtilities.invokeAndWait(() -> replayStroke(workload, stroke));
+        }
+    }
+
+    /**
+     * Draws stroke <code>stroke</code> of <code>workload</code>.
+     *
+     * @param workload Strokes to draw
+     * @param stroke Stroke to draw
+     */
+    private void replayStroke(StrokeStore workload, int stroke) {
+        int width = workload.getWindowWidth(stroke), height = workload.getWindowHeight(stroke);
+        if (panel.getWidth() != width || panel.getHeight() != height) {
+            //Like the user resizing the window, the press paints the image again
+            panel.setSize(width, height);
+            if (panel.getStrokes().getStrokeCount() == 0) {
+                panel.createBufferedImage();
+            }
+            panel.mouseEntered(event(MouseEvent.MOUSE_ENTERED, 0, 0));
+        }
+        panel.setMyColor(new Color(workload.getColor(stroke), true));
+        panel.setMySize(workload.getSize(stroke));
+        int numberOfPoints = workload.getStrokePointCount(stroke);
+        int x = (int) workload.getX(stroke, 0), y = (int) workload.getY(stroke, 0);
+        MouseEvent press = event(MouseEvent.MOUSE_PRESSED, x, y);
+        long start = System.nanoTime();
+        panel.mousePressed(press);
+        pressed.record(System.nanoTime() - start);
+        for (int j = 1; j < numberOfPoints; j++) {
+            x = (int) workload.getX(stroke, j);
+            y = (int) workload.getY(stroke, j);
+            MouseEvent drag = event(MouseEvent.MOUSE_DRAGGED, x, y);
+            start = System.nanoTime();
+            panel.mouseDragged(drag);
+            dragged.record(System.nanoTime() - start);
+        }
+        MouseEvent release = event(MouseEvent.MOUSE_RELEASED, x, y);
+        start = System.nanoTime();
+        panel.mouseReleased(release);
+        released.record(System.nanoTime() - start);
+    }
+
+    /**
+     * Creates a mouse event of the left button at <code>x</code>,
+     * <code>y</code> on the panel.
+     *
+     * @param id Kind of event
+     * @param x X of the mouse
+     * @param y Y of the mouse
+     * @return The event
+     */
+    private MouseEvent event(int id, int x, int y) {
+        int modifiers = id == MouseEvent.MOUSE_DRAGGED ? InputEvent.BUTTON1_DOWN_MASK : 0;
+        return new MouseEvent(panel, id, System.currentTimeMillis(), modifiers, x, y, 1, false,
+                MouseEvent.BUTTON1);
+    }
+
+    /**
+     * Returns the number of points the panel stored.
+     *
+     * @return Number of points
+     */
+    public int getStoredPoints() {
+        return panel.getStrokes().getPointCount();
+    }
+
+    /**
+     * Returns the latencies of mousePressed.
+     *
+     * @return The histogram
+     */
+    public LatencyHistogram getPressed() {
+        return pressed;
+    }
+
+    /**
+     * Returns the latencies of mouseDragged.
+     *
+     * @return The histogram
+     */
+    public LatencyHistogram getDragged() {
+        return dragged;
+    }
+
+    /**
+     * Returns the latencies of mouseReleased.
+     *
+     * @return The histogram
+     */
+    public LatencyHistogram getReleased() {
+        return released;
+    }
+}